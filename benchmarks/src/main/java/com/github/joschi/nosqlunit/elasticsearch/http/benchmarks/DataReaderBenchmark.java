@@ -0,0 +1,56 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.benchmarks;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.parser.CompiledDataset;
+import com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing datasets and building the bulk request bodies, without any requests to Elasticsearch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataReaderBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int documents;
+
+    private byte[] dataset;
+    private DataReader dataReader;
+
+    @Setup
+    public void setUp() {
+        dataset = Datasets.generate(documents);
+        // Compiling a dataset doesn't send any requests, so no client is required
+        dataReader = new DataReader(null, ElasticsearchConfiguration.remoteElasticsearch().build(null));
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getDocuments() throws IOException {
+        return DataReader.getDocuments(new ByteArrayInputStream(dataset));
+    }
+
+    @Benchmark
+    public CompiledDataset compile() throws IOException {
+        return dataReader.compile(new ByteArrayInputStream(dataset));
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates datasets in the JSON format of {@link com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader}.
+ */
+final class Datasets {
+    static final String INDEX_NAME = "benchmark";
+    static final String INDEX_TYPE = "doc";
+
+    private Datasets() {
+    }
+
+    /**
+     * Generate a dataset with the given number of documents in a single index.
+     *
+     * @param numberOfDocuments The number of documents in the dataset
+     * @return The UTF-8 encoded dataset
+     */
+    static byte[] generate(int numberOfDocuments) {
+        final StringBuilder sb = new StringBuilder(numberOfDocuments * 256);
+        sb.append("{\"documents\":[");
+        for (int i = 0; i < numberOfDocuments; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"document\":[")
+                    .append("{\"index\":{\"indexName\":\"").append(INDEX_NAME)
+                    .append("\",\"indexType\":\"").append(INDEX_TYPE)
+                    .append("\",\"indexId\":\"").append(i).append("\"}},")
+                    .append("{\"data\":{\"name\":\"Document ").append(i)
+                    .append("\",\"number\":").append(i)
+                    .append(",\"flag\":").append(i % 2 == 0)
+                    .append(",\"tags\":[\"tag-").append(i % 10).append("\",\"tag-").append(i % 100).append("\"]")
+                    .append(",\"nested\":{\"value\":").append(i * 0.5d).append(",\"text\":\"Lorem ipsum dolor sit amet\"}}}")
+                    .append("]}");
+        }
+        sb.append("]}");
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
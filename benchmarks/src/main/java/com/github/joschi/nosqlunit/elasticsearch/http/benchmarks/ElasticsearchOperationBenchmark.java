@@ -0,0 +1,103 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.benchmarks;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchOperation;
+import com.github.joschi.nosqlunit.elasticsearch.http.inmemory.InMemoryElasticsearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks inserting, comparing and deleting datasets end-to-end against an {@link InMemoryElasticsearch},
+ * including request serialization, HTTP round trips and response parsing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ElasticsearchOperationBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int documents;
+
+    private byte[] dataset;
+    private InMemoryElasticsearch server;
+    private ElasticsearchOperation operation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataset = Datasets.generate(documents);
+        server = InMemoryElasticsearch.newInMemoryElasticsearchRule().build();
+        server.start();
+        operation = new ElasticsearchOperation(ElasticsearchConfiguration.remoteElasticsearch(server.getUrl())
+                .createIndices(true)
+                .deleteAllIndices(true)
+                .indexSettings(Collections.singletonMap("number_of_shards", 1))
+                .build());
+        operation.insert(new ByteArrayInputStream(dataset));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        operation.connectionManager().shutdownClient();
+        server.stop();
+    }
+
+    /**
+     * Inserts the dataset, including the creation of its index.
+     */
+    @Benchmark
+    public void insert(EmptyCluster emptyCluster) {
+        operation.insert(new ByteArrayInputStream(dataset));
+    }
+
+    @Benchmark
+    public boolean databaseIs() {
+        return operation.databaseIs(new ByteArrayInputStream(dataset));
+    }
+
+    @Benchmark
+    public void deleteAll(InsertedDataset insertedDataset) {
+        operation.deleteAll();
+    }
+
+    /**
+     * Deletes all indices before every invocation, so that {@link #insert(EmptyCluster)} can create the index again.
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyCluster {
+        @Setup(Level.Invocation)
+        public void setUp(ElasticsearchOperationBenchmark benchmark) {
+            benchmark.operation.deleteAll();
+        }
+    }
+
+    /**
+     * Replaces all indices with the dataset before every invocation, so that {@link #deleteAll(InsertedDataset)}
+     * always deletes it.
+     */
+    @State(Scope.Benchmark)
+    public static class InsertedDataset {
+        @Setup(Level.Invocation)
+        public void setUp(ElasticsearchOperationBenchmark benchmark) {
+            benchmark.operation.deleteAll();
+            benchmark.operation.insert(new ByteArrayInputStream(benchmark.dataset));
+        }
+    }
+}
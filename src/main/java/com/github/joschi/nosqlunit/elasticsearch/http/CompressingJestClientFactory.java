@@ -0,0 +1,47 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestClientFactory;
+import io.searchbox.client.config.HttpClientConfig;
+import io.searchbox.client.http.JestHttpClient;
+
+import java.util.Collections;
+
+/**
+ * {@link JestClientFactory} creating {@link CompressingJestHttpClient clients} which gzip-compress request bodies
+ * with a size of at least the given threshold.
+ */
+class CompressingJestClientFactory extends JestClientFactory {
+    private static final String DEFAULT_SERVER = "http://localhost:9200";
+
+    private final long threshold;
+    private HttpClientConfig httpClientConfig;
+
+    /**
+     * @param threshold The minimum size of request bodies in bytes to compress
+     */
+    CompressingJestClientFactory(long threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void setHttpClientConfig(HttpClientConfig httpClientConfig) {
+        if (httpClientConfig.isDiscoveryEnabled()) {
+            throw new IllegalArgumentException("Request compression can't be used together with node discovery.");
+        }
+
+        super.setHttpClientConfig(httpClientConfig);
+        this.httpClientConfig = httpClientConfig;
+    }
+
+    @Override
+    public JestClient getObject() {
+        final JestHttpClient client = (JestHttpClient) super.getObject();
+        final CompressingJestHttpClient compressingClient = new CompressingJestHttpClient(client, threshold);
+        compressingClient.setServers(httpClientConfig == null
+                ? Collections.singleton(DEFAULT_SERVER)
+                : httpClientConfig.getServerList());
+
+        return compressingClient;
+    }
+}
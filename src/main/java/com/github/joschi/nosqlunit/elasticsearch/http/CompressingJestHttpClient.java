@@ -0,0 +1,79 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import io.searchbox.client.http.JestHttpClient;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link JestHttpClient} which gzip-compresses request bodies, for example of bulk and multi get requests,
+ * with a size of at least the given threshold and sends them with {@code Content-Encoding: gzip}.
+ * <p>
+ * The request bodies are compressed eagerly, because the asynchronous HTTP client used for bulk requests
+ * can't stream {@link org.apache.http.client.entity.GzipCompressingEntity}.
+ * <p>
+ * The client shares the HTTP clients of the given, already configured {@link JestHttpClient} and shuts it
+ * down together with itself.
+ */
+class CompressingJestHttpClient extends JestHttpClient {
+    private static final String GZIP_ENCODING = "gzip";
+
+    private final JestHttpClient client;
+    private final long threshold;
+
+    /**
+     * @param client    The configured {@link JestHttpClient} whose HTTP clients are used
+     * @param threshold The minimum size of request bodies in bytes to compress
+     */
+    CompressingJestHttpClient(JestHttpClient client, long threshold) {
+        this.client = client;
+        this.threshold = threshold;
+
+        setHttpClient(client.getHttpClient());
+        setAsyncClient(client.getAsyncClient());
+        setGson(client.getGson());
+        setHttpClientContextTemplate(client.getHttpClientContextTemplate());
+    }
+
+    @Override
+    protected HttpUriRequest constructHttpMethod(String methodName, String url, String payload, RequestConfig requestConfig) {
+        final HttpUriRequest request = super.constructHttpMethod(methodName, url, null, requestConfig);
+        if (payload != null && request instanceof HttpEntityEnclosingRequest) {
+            ((HttpEntityEnclosingRequest) request).setEntity(createEntity(payload));
+        }
+
+        return request;
+    }
+
+    private HttpEntity createEntity(String payload) {
+        final byte[] content = payload.getBytes(StandardCharsets.UTF_8);
+        if (content.length < threshold) {
+            return new ByteArrayEntity(content, requestContentType);
+        }
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray(), requestContentType);
+        entity.setContentEncoding(GZIP_ENCODING);
+        return entity;
+    }
+
+    @Override
+    public void shutdownClient() {
+        super.shutdownClient();
+        client.shutdownClient();
+    }
+}
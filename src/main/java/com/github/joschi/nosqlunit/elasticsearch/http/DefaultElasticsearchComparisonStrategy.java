@@ -1,20 +1,61 @@
 package com.github.joschi.nosqlunit.elasticsearch.http;
 
 import com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lordofthejars.nosqlunit.core.NoSqlAssertionError;
 import io.searchbox.client.JestClient;
 
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 public class DefaultElasticsearchComparisonStrategy implements ElasticsearchComparisonStrategy {
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder()
+            .setNameFormat("elasticsearch-comparison-%d")
+            .setDaemon(true)
+            .build();
+
+    private final int multiGetSize;
+    private final int comparisonThreads;
+    private final int maxMismatches;
+    private final boolean scrollComparison;
+    private final IndexNamespace indexNamespace;
+
+    public DefaultElasticsearchComparisonStrategy() {
+        // The client of the configuration is never used, the client is provided by the connection callback
+        this(new ElasticsearchConfiguration(null, ElasticsearchConfiguration.remoteElasticsearch()));
+    }
+
+    public DefaultElasticsearchComparisonStrategy(ElasticsearchConfiguration configuration) {
+        this.multiGetSize = configuration.getMultiGetSize();
+        this.comparisonThreads = configuration.getComparisonThreads();
+        this.maxMismatches = configuration.getMaxMismatches();
+        this.scrollComparison = configuration.isScrollComparison();
+        this.indexNamespace = configuration.getIndexNamespace();
+    }
+
     @Override
     public boolean compare(ElasticsearchConnectionCallback connection, InputStream dataset) throws NoSqlAssertionError,
             Throwable {
         final JestClient jestClient = connection.client();
         final List<Map<String, Object>> documents = DataReader.getDocuments(dataset);
-        ElasticsearchAssertion.strictAssertEquals(documents, jestClient);
+        if (scrollComparison) {
+            ElasticsearchAssertion.scrollAssertEquals(documents, jestClient, maxMismatches, indexNamespace);
+        } else if (comparisonThreads <= 1) {
+            ElasticsearchAssertion.strictAssertEquals(documents, jestClient, multiGetSize, Runnable::run, maxMismatches,
+                    indexNamespace);
+        } else {
+            final ExecutorService executor = Executors.newFixedThreadPool(comparisonThreads, THREAD_FACTORY);
+            try {
+                ElasticsearchAssertion.strictAssertEquals(documents, jestClient, multiGetSize, executor, maxMismatches,
+                        indexNamespace);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
         return true;
     }
 
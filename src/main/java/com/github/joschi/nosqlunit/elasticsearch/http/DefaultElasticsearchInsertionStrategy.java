@@ -1,26 +1,110 @@
 package com.github.joschi.nosqlunit.elasticsearch.http;
 
+import com.github.joschi.nosqlunit.elasticsearch.http.parser.CompiledDataset;
 import com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader;
+import com.github.joschi.nosqlunit.elasticsearch.http.parser.DatasetCache;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class DefaultElasticsearchInsertionStrategy implements ElasticsearchInsertionStrategy {
-    private final boolean createIndices;
-    private final Map<String, Object> indexSettings;
-    private final Map<String, Map<String, Object>> templates;
+    private final ElasticsearchConfiguration configuration;
+    private final Set<String> insertedIndices;
+    private final ElasticsearchMetricsListener metricsListener;
 
     public DefaultElasticsearchInsertionStrategy(boolean createIndices,
                                                  Map<String, Object> indexSettings,
                                                  Map<String, Map<String, Object>> templates) {
-        this.createIndices = createIndices;
-        this.indexSettings = indexSettings;
-        this.templates = templates;
+        // The client of the configuration is never used, the client is provided by the connection callback
+        this(new ElasticsearchConfiguration(null, ElasticsearchConfiguration.remoteElasticsearch()
+                .createIndices(createIndices)
+                .indexSettings(indexSettings)
+                .indexTemplates(templates)));
+    }
+
+    public DefaultElasticsearchInsertionStrategy(ElasticsearchConfiguration configuration) {
+        this(configuration, new HashSet<>());
+    }
+
+    /**
+     * Create a new {@link DefaultElasticsearchInsertionStrategy} which records the names of all indices
+     * written to by the inserted datasets.
+     *
+     * @param configuration   The configuration for inserting data
+     * @param insertedIndices The (thread-safe) set receiving the names of the indices written to
+     */
+    public DefaultElasticsearchInsertionStrategy(ElasticsearchConfiguration configuration, Set<String> insertedIndices) {
+        this(configuration, insertedIndices, configuration.getMetricsListener());
+    }
+
+    /**
+     * Create a new {@link DefaultElasticsearchInsertionStrategy} which records the names of all indices
+     * written to by the inserted datasets and reports its metrics to the given listener.
+     *
+     * @param configuration   The configuration for inserting data, its metrics listener is ignored
+     * @param insertedIndices The (thread-safe) set receiving the names of the indices written to
+     * @param metricsListener The listener receiving the metrics of all inserted datasets
+     */
+    public DefaultElasticsearchInsertionStrategy(ElasticsearchConfiguration configuration,
+                                                 Set<String> insertedIndices,
+                                                 ElasticsearchMetricsListener metricsListener) {
+        this.configuration = configuration;
+        this.insertedIndices = insertedIndices;
+        this.metricsListener = metricsListener;
     }
 
     @Override
     public void insert(ElasticsearchConnectionCallback connection, InputStream dataset) throws Throwable {
-        DataReader dataReader = new DataReader(connection.client(), createIndices, indexSettings, templates);
-        dataReader.read(dataset);
+        DataReader dataReader = new DataReader(connection.client(), configuration, metricsListener);
+        try {
+            if (configuration.getDatasetCacheSize() > 0L) {
+                readCached(dataReader, dataset);
+            } else {
+                dataReader.read(dataset);
+            }
+        } finally {
+            insertedIndices.addAll(dataReader.getIndices());
+        }
+    }
+
+    private void readCached(DataReader dataReader, InputStream dataset) throws IOException {
+        final long cacheSize = configuration.getDatasetCacheSize();
+        try (InputStream inputStream = dataset) {
+            // The dataset is hashed while it's being read, datasets larger than the cache are never buffered completely
+            final HashingInputStream hashingInputStream = new HashingInputStream(Hashing.sha256(), inputStream);
+            final byte[] data = ByteStreams.toByteArray(ByteStreams.limit(hashingInputStream, cacheSize));
+            final int next = inputStream.read();
+            if (next != -1) {
+                dataReader.read(new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                        new ByteArrayInputStream(data),
+                        new ByteArrayInputStream(new byte[]{(byte) next}),
+                        inputStream))));
+                return;
+            }
+
+            // The bulk request bodies depend on the bulk settings and the index namespace, so they're part of the key
+            final String key = hashingInputStream.hash().toString()
+                    + '/' + configuration.getBulkActions()
+                    + '/' + configuration.getBulkSize()
+                    + '/' + configuration.getIndexNamespace().getPrefix();
+            final DatasetCache cache = DatasetCache.shared(cacheSize);
+            CompiledDataset compiledDataset = cache.get(key);
+            if (compiledDataset == null) {
+                compiledDataset = dataReader.compile(new ByteArrayInputStream(data));
+                cache.put(key, compiledDataset);
+            }
+
+            dataReader.read(compiledDataset);
+        }
     }
 }
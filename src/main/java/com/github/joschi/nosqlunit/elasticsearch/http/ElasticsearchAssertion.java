@@ -2,31 +2,259 @@ package com.github.joschi.nosqlunit.elasticsearch.http;
 
 import com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader;
 import com.google.gson.Gson;
-import com.lordofthejars.nosqlunit.core.FailureHandler;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.lordofthejars.nosqlunit.core.NoSqlAssertionError;
 import com.lordofthejars.nosqlunit.util.DeepEquals;
 import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.ClearScroll;
 import io.searchbox.core.Count;
 import io.searchbox.core.CountResult;
-import io.searchbox.core.DocumentResult;
-import io.searchbox.core.Get;
+import io.searchbox.core.Doc;
+import io.searchbox.core.MultiGet;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.params.Parameters;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ElasticsearchAssertion {
     private static final Gson GSON = new Gson();
+    private static final int DEFAULT_MULTI_GET_SIZE = 100;
+    private static final String SCROLL_QUERY = "{\"query\":{\"match_all\":{}},\"sort\":[\"_doc\"]}";
+    private static final int SCROLL_PAGE_SIZE = 1000;
+    private static final String SCROLL_KEEP_ALIVE = "1m";
 
     private ElasticsearchAssertion() {
         super();
     }
 
-    @SuppressWarnings("unchecked")
     public static void strictAssertEquals(List<Map<String, Object>> expectedDocuments, JestClient client) throws IOException {
+        strictAssertEquals(expectedDocuments, client, DEFAULT_MULTI_GET_SIZE);
+    }
+
+    /**
+     * Compare the expected documents with the documents stored in Elasticsearch.
+     * The expected documents are fetched using multi get requests of at most {@code multiGetSize} documents.
+     *
+     * @param expectedDocuments The expected documents
+     * @param client            The {@link JestClient} to use
+     * @param multiGetSize      The maximum number of documents per multi get request
+     * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/docs-multi-get.html">Elasticsearch Reference » Document APIs » Multi Get API</a>
+     */
+    public static void strictAssertEquals(List<Map<String, Object>> expectedDocuments, JestClient client, int multiGetSize) throws IOException {
+        strictAssertEquals(expectedDocuments, client, multiGetSize, Runnable::run, 1);
+    }
+
+    /**
+     * Compare the expected documents with the documents stored in Elasticsearch.
+     * <p>
+     * The expected documents are fetched using multi get requests of at most {@code multiGetSize} documents,
+     * each batch of documents is fetched and compared by a separate task on the given {@link Executor}.
+     * Up to {@code maxMismatches} mismatching documents are collected and reported in a single
+     * {@link NoSqlAssertionError}, no further documents are compared once this limit has been reached.
+     *
+     * @param expectedDocuments The expected documents
+     * @param client            The {@link JestClient} to use
+     * @param multiGetSize      The maximum number of documents per multi get request
+     * @param executor          The {@link Executor} running the comparisons
+     * @param maxMismatches     The maximum number of reported mismatches
+     */
+    public static void strictAssertEquals(List<Map<String, Object>> expectedDocuments,
+                                          JestClient client,
+                                          int multiGetSize,
+                                          Executor executor,
+                                          int maxMismatches) throws IOException {
+        strictAssertEquals(expectedDocuments, client, multiGetSize, executor, maxMismatches, IndexNamespace.NONE);
+    }
+
+    /**
+     * Compare the expected documents with the documents stored in the given {@link IndexNamespace}.
+     * <p>
+     * The index names of the expected documents are prefixed with the namespace and only the documents
+     * in the namespace are counted, otherwise like {@link #strictAssertEquals(List, JestClient, int, Executor, int)}.
+     *
+     * @param expectedDocuments The expected documents
+     * @param client            The {@link JestClient} to use
+     * @param multiGetSize      The maximum number of documents per multi get request
+     * @param executor          The {@link Executor} running the comparisons
+     * @param maxMismatches     The maximum number of reported mismatches
+     * @param indexNamespace    The namespace of the indices
+     */
+    public static void strictAssertEquals(List<Map<String, Object>> expectedDocuments,
+                                          JestClient client,
+                                          int multiGetSize,
+                                          Executor executor,
+                                          int maxMismatches,
+                                          IndexNamespace indexNamespace) throws IOException {
+        final Mismatches mismatches = new Mismatches(maxMismatches);
+
+        checkNumberOfDocuments(expectedDocuments, client, indexNamespace, mismatches);
+
+        final List<ExpectedDocument> documents = expectedDocuments(expectedDocuments, indexNamespace);
+        final List<CompletableFuture<Void>> comparisons = new ArrayList<>();
+        for (int from = 0; from < documents.size() && !mismatches.isFull(); from += multiGetSize) {
+            final int batchStart = from;
+            final List<ExpectedDocument> batch = documents.subList(from, Math.min(from + multiGetSize, documents.size()));
+            comparisons.add(CompletableFuture.runAsync(() -> {
+                try {
+                    checkDocuments(batch, batchStart, client, mismatches);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+
+        awaitComparisons(comparisons);
+        mismatches.check();
+    }
+
+    /**
+     * Compare the expected documents with <em>all</em> documents stored in the indices mentioned by the expected documents.
+     * <p>
+     * The actual documents are streamed page by page using the Scroll API and looked up in the expected documents,
+     * so that extra, missing and differing documents are found in a single pass over the indices. Expected documents
+     * with the same index, type and ID are reported as mismatches, too. Up to {@code maxMismatches} mismatches are
+     * reported in a single {@link NoSqlAssertionError}.
+     * <p>
+     * Without any expected documents, only the number of all stored documents is checked to be zero.
+     *
+     * @param expectedDocuments The expected documents
+     * @param client            The {@link JestClient} to use
+     * @param maxMismatches     The maximum number of reported mismatches
+     * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/search-request-scroll.html">Elasticsearch Reference » Search APIs » Request Body Search » Scroll</a>
+     */
+    public static void scrollAssertEquals(List<Map<String, Object>> expectedDocuments,
+                                          JestClient client,
+                                          int maxMismatches) throws IOException {
+        scrollAssertEquals(expectedDocuments, client, maxMismatches, IndexNamespace.NONE);
+    }
+
+    /**
+     * Compare the expected documents with <em>all</em> documents stored in the indices mentioned by the expected
+     * documents, whose index names are prefixed with the given {@link IndexNamespace}.
+     * Without any expected documents, only the number of documents in the namespace is checked to be zero.
+     *
+     * @param expectedDocuments The expected documents
+     * @param client            The {@link JestClient} to use
+     * @param maxMismatches     The maximum number of reported mismatches
+     * @param indexNamespace    The namespace of the indices
+     * @see #scrollAssertEquals(List, JestClient, int)
+     */
+    public static void scrollAssertEquals(List<Map<String, Object>> expectedDocuments,
+                                          JestClient client,
+                                          int maxMismatches,
+                                          IndexNamespace indexNamespace) throws IOException {
+        final Mismatches mismatches = new Mismatches(maxMismatches);
+
+        // Without any expected documents there are no indices to search, so a single count is sufficient
+        if (expectedDocuments.isEmpty()) {
+            checkNumberOfDocuments(expectedDocuments, client, indexNamespace, mismatches);
+            mismatches.check();
+            return;
+        }
+
+        final List<ExpectedDocument> documents = expectedDocuments(expectedDocuments, indexNamespace);
+        final Map<String, Integer> remainingDocuments = new HashMap<>();
+        final Set<String> indices = new LinkedHashSet<>();
+        for (int i = 0; i < documents.size(); i++) {
+            final ExpectedDocument document = documents.get(i);
+            // A document can only be stored once, so expecting it several times can never match
+            if (remainingDocuments.putIfAbsent(document.key(), i) != null) {
+                mismatches.add(i, String.format("Document with index: %s - type: %s - id: %s is expected more than once.",
+                        document.index, document.type, document.id));
+            }
+            indices.add(document.index);
+        }
+
+        final Search search = new Search.Builder(SCROLL_QUERY)
+                .addIndex(indices)
+                .ignoreUnavailable(true)
+                .setParameter(Parameters.SCROLL, SCROLL_KEEP_ALIVE)
+                .setParameter(Parameters.SIZE, SCROLL_PAGE_SIZE)
+                .build();
+
+        int extraDocuments = 0;
+        String scrollId = null;
+        try {
+            JestResult result = client.execute(search);
+            while (true) {
+                if (!result.isSucceeded()) {
+                    throw new IllegalStateException("Error while fetching documents: " + result.getErrorMessage());
+                }
+                scrollId = result.getJsonObject().getAsJsonPrimitive("_scroll_id").getAsString();
+
+                final JsonArray hits = result.getJsonObject().getAsJsonObject("hits").getAsJsonArray("hits");
+                if (hits.size() == 0) {
+                    break;
+                }
+
+                for (JsonElement element : hits) {
+                    final JsonObject hit = element.getAsJsonObject();
+                    final String index = hit.getAsJsonPrimitive("_index").getAsString();
+                    final String type = hit.getAsJsonPrimitive("_type").getAsString();
+                    final String id = hit.getAsJsonPrimitive("_id").getAsString();
+
+                    // Expected documents without explicit type match documents of any type
+                    Integer position = remainingDocuments.remove(ExpectedDocument.key(index, type, id));
+                    if (position == null) {
+                        position = remainingDocuments.remove(ExpectedDocument.key(index, null, id));
+                    }
 
-        checkNumberOfDocuments(expectedDocuments, client);
+                    if (position == null) {
+                        mismatches.add(documents.size() + extraDocuments++, String.format(
+                                "Unexpected document with index: %s - type: %s - id: %s has been found: %s.",
+                                index, type, id, hit.get("_source")));
+                    } else {
+                        mismatches.add(position, checkDocumentEquality(documents.get(position), hit));
+                    }
+                }
+
+                if (mismatches.isFull()) {
+                    break;
+                }
+
+                result = client.execute(new SearchScroll.Builder(scrollId, SCROLL_KEEP_ALIVE).build());
+            }
+        } finally {
+            if (scrollId != null) {
+                clearScroll(client, scrollId);
+            }
+        }
+
+        for (Integer position : remainingDocuments.values()) {
+            mismatches.add(position, missingDocument(documents.get(position)));
+        }
+
+        mismatches.check();
+    }
+
+    private static void clearScroll(JestClient client, String scrollId) {
+        try {
+            client.execute(new ClearScroll.Builder().addScrollId(scrollId).build());
+        } catch (IOException e) {
+            // Best effort, the search context will be released by Elasticsearch once the keep alive has expired
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ExpectedDocument> expectedDocuments(List<Map<String, Object>> expectedDocuments,
+                                                            IndexNamespace indexNamespace) {
+        final List<ExpectedDocument> documents = new ArrayList<>(expectedDocuments.size());
 
         for (Map<String, Object> document : expectedDocuments) {
             final Object object = document.get(DataReader.DOCUMENT_ELEMENT);
@@ -49,78 +277,195 @@ public class ElasticsearchAssertion {
 
                 }
 
-                checkIndicesWithDocument(indexes, expectedDataOfDocument, client);
+                for (Map<String, Object> indexInformation : indexes) {
+                    documents.add(new ExpectedDocument(indexInformation, expectedDataOfDocument, indexNamespace));
+                }
 
             } else {
                 throw new IllegalArgumentException("Array of Indexes and Data are required.");
             }
         }
+
+        return documents;
+    }
+
+    private static void awaitComparisons(List<CompletableFuture<Void>> comparisons) throws IOException {
+        RuntimeException failure = null;
+        for (CompletableFuture<Void> comparison : comparisons) {
+            try {
+                comparison.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            final Throwable cause = failure.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw failure;
+        }
     }
 
-    private static void checkIndicesWithDocument(List<Map<String, Object>> indexes,
-                                                 Map<String, Object> expectedDataOfDocument,
-                                                 JestClient client) throws IOException {
-        for (Map<String, Object> indexInformation : indexes) {
-            final Get request = prepareGet(indexInformation);
-            final DocumentResult documentResult = client.execute(request);
-            checkExistenceOfDocument(request, documentResult);
-            checkDocumentEquality(expectedDataOfDocument, request, documentResult);
+    private static void checkDocuments(List<ExpectedDocument> expectedDocuments,
+                                       int firstPosition,
+                                       JestClient client,
+                                       Mismatches mismatches) throws IOException {
+        if (expectedDocuments.isEmpty() || mismatches.isFull()) {
+            return;
+        }
+
+        final List<Doc> docs = new ArrayList<>(expectedDocuments.size());
+        for (ExpectedDocument expectedDocument : expectedDocuments) {
+            docs.add(new Doc(expectedDocument.index, expectedDocument.type, expectedDocument.id));
+        }
+
+        final JestResult result = client.execute(new MultiGet.Builder.ByDoc(docs).build());
+        if (!result.isSucceeded()) {
+            throw new IllegalStateException("Error while fetching documents: " + result.getErrorMessage());
+        }
+
+        // The multi get response contains the documents in the order of the request
+        final JsonArray actualDocuments = result.getJsonObject().getAsJsonArray("docs");
+        for (int i = 0; i < expectedDocuments.size() && !mismatches.isFull(); i++) {
+            final ExpectedDocument expectedDocument = expectedDocuments.get(i);
+            final JsonObject actualDocument = actualDocuments.get(i).getAsJsonObject();
+            final String mismatch = checkExistenceOfDocument(expectedDocument, actualDocument);
+            if (mismatch != null) {
+                mismatches.add(firstPosition + i, mismatch);
+            } else {
+                mismatches.add(firstPosition + i, checkDocumentEquality(expectedDocument, actualDocument));
+            }
         }
     }
 
-    private static void checkDocumentEquality(Map<String, Object> expectedDataOfDocument,
-                                              Get request,
-                                              DocumentResult dataOfDocumentResponse) {
-        @SuppressWarnings("unchecked") final Map<String, Object> dataOfDocument = (Map<String, Object>) dataOfDocumentResponse.getSourceAsObject(Map.class, false);
+    private static String checkDocumentEquality(ExpectedDocument expectedDocument, JsonObject actualDocument) {
+        @SuppressWarnings("unchecked") final Map<String, Object> dataOfDocument = (Map<String, Object>) GSON.fromJson(actualDocument.get("_source"), Map.class);
 
         // Workaround because DeepEquals.deepEquals expects the types to be identical
         final Map<String, Object> actual = new HashMap<>(dataOfDocument);
-        final Map<String, Object> expected = new HashMap<>(expectedDataOfDocument);
+        final Map<String, Object> expected = new HashMap<>(expectedDocument.data);
         if (!DeepEquals.deepEquals(actual, expected)) {
-            throw FailureHandler.createFailure("Expected document for index: %s - type: %s - id: %s is %s, but %s was found.",
-                    request.getIndex(), request.getType(), request.getId(),
-                    GSON.toJson(expectedDataOfDocument), GSON.toJson(dataOfDocument));
+            return String.format("Expected document for index: %s - type: %s - id: %s is %s, but %s was found.",
+                    expectedDocument.index, expectedDocument.type, expectedDocument.id,
+                    GSON.toJson(expectedDocument.data), GSON.toJson(dataOfDocument));
         }
+
+        return null;
     }
 
-    private static void checkExistenceOfDocument(Get request, DocumentResult dataOfDocumentResponse) {
-        if (!dataOfDocumentResponse.isSucceeded()) {
-            throw FailureHandler.createFailure(
-                    "Document with index: %s - type: %s - id: %s has not returned any document.",
-                    request.getIndex(), request.getType(), request.getId());
+    private static String checkExistenceOfDocument(ExpectedDocument expectedDocument, JsonObject actualDocument) {
+        final JsonElement found = actualDocument.get("found");
+        if (found == null || !found.getAsBoolean()) {
+            return missingDocument(expectedDocument);
         }
+
+        return null;
+    }
+
+    private static String missingDocument(ExpectedDocument expectedDocument) {
+        return String.format("Document with index: %s - type: %s - id: %s has not returned any document.",
+                expectedDocument.index, expectedDocument.type, expectedDocument.id);
     }
 
-    private static void checkNumberOfDocuments(List<Map<String, Object>> expectedDocuments, JestClient client) throws IOException {
+    private static void checkNumberOfDocuments(List<Map<String, Object>> expectedDocuments,
+                                               JestClient client,
+                                               IndexNamespace indexNamespace,
+                                               Mismatches mismatches) throws IOException {
         int expectedNumberOfElements = expectedDocuments.size();
 
-        long numberOfInsertedDocuments = numberOfInsertedDocuments(client);
+        long numberOfInsertedDocuments = numberOfInsertedDocuments(client, indexNamespace);
 
         if (expectedNumberOfElements != numberOfInsertedDocuments) {
-            throw FailureHandler.createFailure("Expected number of documents are %s but %s has been found.",
-                    expectedNumberOfElements, numberOfInsertedDocuments);
+            mismatches.add(-1, String.format("Expected number of documents are %s but %s has been found.",
+                    expectedNumberOfElements, numberOfInsertedDocuments));
         }
     }
 
-    private static Get prepareGet(Map<String, Object> indexInformation) {
-        final String index = (String) indexInformation.get(DataReader.INDEX_NAME_ELEMENT);
-        final String id = (String) indexInformation.get(DataReader.INDEX_ID_ELEMENT);
-        final Get.Builder getBuilder = new Get.Builder(index, id);
-
-        if (indexInformation.containsKey(DataReader.INDEX_TYPE_ELEMENT)) {
-            getBuilder.type((String) indexInformation.get(DataReader.INDEX_TYPE_ELEMENT));
-        }
-
-        return getBuilder.build();
-    }
-
     @SuppressWarnings("unchecked")
     private static Map<String, Object> dataOfDocument(Object object) {
         return (Map<String, Object>) object;
     }
 
-    private static long numberOfInsertedDocuments(JestClient client) throws IOException {
-        final CountResult countResult = client.execute(new Count.Builder().build());
+    private static long numberOfInsertedDocuments(JestClient client, IndexNamespace indexNamespace) throws IOException {
+        final Count.Builder count = new Count.Builder();
+        if (indexNamespace.isEnabled()) {
+            count.addIndex(indexNamespace.getIndexPattern()).ignoreUnavailable(true);
+        }
+        final CountResult countResult = client.execute(count.build());
         return countResult.getCount().longValue();
     }
+
+    private static final class ExpectedDocument {
+        private final String index;
+        private final String type;
+        private final String id;
+        private final Map<String, Object> data;
+
+        private ExpectedDocument(Map<String, Object> indexInformation, Map<String, Object> data, IndexNamespace indexNamespace) {
+            this.index = indexNamespace.indexName((String) indexInformation.get(DataReader.INDEX_NAME_ELEMENT));
+            this.type = (String) indexInformation.get(DataReader.INDEX_TYPE_ELEMENT);
+            this.id = (String) indexInformation.get(DataReader.INDEX_ID_ELEMENT);
+            this.data = data;
+        }
+
+        private String key() {
+            return key(index, type, id);
+        }
+
+        private static String key(String index, String type, String id) {
+            return index + '/' + (type == null ? "" : type) + '/' + id;
+        }
+    }
+
+    /**
+     * Thread-safe collection of mismatch messages, ordered by the position of the expected document in the dataset.
+     */
+    private static final class Mismatches {
+        private final int maxMismatches;
+        private final AtomicInteger found = new AtomicInteger();
+        private final Map<Integer, String> messages = new ConcurrentSkipListMap<>();
+
+        private Mismatches(int maxMismatches) {
+            this.maxMismatches = Math.max(maxMismatches, 1);
+        }
+
+        private void add(int position, String message) {
+            if (message != null && found.getAndIncrement() < maxMismatches) {
+                messages.put(position, message);
+            }
+        }
+
+        private boolean isFull() {
+            return found.get() >= maxMismatches;
+        }
+
+        private void check() {
+            if (messages.isEmpty()) {
+                return;
+            }
+
+            if (messages.size() == 1) {
+                throw new NoSqlAssertionError(messages.values().iterator().next());
+            }
+
+            final int total = found.get();
+            final StringBuilder sb = new StringBuilder()
+                    .append(messages.size())
+                    .append(total > messages.size() ? " of at least " + total : "")
+                    .append(" mismatches between expected and actual documents:");
+            for (String message : messages.values()) {
+                sb.append('\n').append(message);
+            }
+
+            throw new NoSqlAssertionError(sb.toString());
+        }
+    }
 }
@@ -5,33 +5,78 @@ import io.searchbox.client.JestClient;
 import io.searchbox.client.JestClientFactory;
 import io.searchbox.client.config.HttpClientConfig;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class ElasticsearchConfiguration extends AbstractJsr330Configuration {
     private final JestClient client;
+    private final Object clusterKey;
     private final boolean deleteAllIndices;
     private final boolean createIndices;
     private final Map<String, Object> indexSettings;
     private final Map<String, Map<String, Object>> indexTemplates;
+    private final int bulkActions;
+    private final long bulkSize;
+    private final int maxConcurrentBulkRequests;
+    private final int deleteByQuerySlices;
+    private final boolean trackIndices;
+    private final String snapshotRepositoryName;
+    private final String snapshotRepositoryLocation;
+    private final int multiGetSize;
+    private final int comparisonThreads;
+    private final int maxMismatches;
+    private final boolean scrollComparison;
+    private final long datasetCacheSize;
+    private final RefreshPolicy refreshPolicy;
+    private final boolean bulkLoadProfile;
+    private final IndexNamespace indexNamespace;
+    private final ElasticsearchMetricsListener metricsListener;
 
-    ElasticsearchConfiguration(JestClient client,
-                               boolean deleteAllIndices,
-                               boolean createIndices,
-                               Map<String, Object> indexSettings,
-                               Map<String, Map<String, Object>> indexTemplates) {
+    ElasticsearchConfiguration(JestClient client, Builder builder) {
+        this(client, client, builder);
+    }
+
+    ElasticsearchConfiguration(JestClient client, Object clusterKey, Builder builder) {
         this.client = client;
-        this.deleteAllIndices = deleteAllIndices;
-        this.createIndices = createIndices;
-        this.indexSettings = indexSettings;
-        this.indexTemplates = indexTemplates;
+        this.clusterKey = clusterKey;
+        this.deleteAllIndices = builder.deleteAllIndices;
+        this.createIndices = builder.createIndices;
+        this.indexSettings = builder.indexSettings;
+        this.indexTemplates = builder.indexTemplates;
+        this.bulkActions = builder.bulkActions;
+        this.bulkSize = builder.bulkSize;
+        this.maxConcurrentBulkRequests = builder.maxConcurrentBulkRequests;
+        this.deleteByQuerySlices = builder.deleteByQuerySlices;
+        this.trackIndices = builder.trackIndices;
+        this.snapshotRepositoryName = builder.snapshotRepositoryName;
+        this.snapshotRepositoryLocation = builder.snapshotRepositoryLocation;
+        this.multiGetSize = builder.multiGetSize;
+        this.comparisonThreads = builder.comparisonThreads;
+        this.maxMismatches = builder.maxMismatches;
+        this.scrollComparison = builder.scrollComparison;
+        this.datasetCacheSize = builder.datasetCacheSize;
+        this.refreshPolicy = builder.refreshPolicy;
+        this.bulkLoadProfile = builder.bulkLoadProfile;
+        this.indexNamespace = builder.indexNamespace;
+        this.metricsListener = builder.metricsListener;
     }
 
     public JestClient getClient() {
         return client;
     }
 
+    /**
+     * The identity of the Elasticsearch cluster of this configuration, which is the set of configured servers
+     * or the {@link JestClient} passed to {@link Builder#build(JestClient)}.
+     */
+    Object getClusterKey() {
+        return clusterKey;
+    }
+
     public boolean isCreateIndices() {
         return createIndices;
     }
@@ -48,6 +93,70 @@ public class ElasticsearchConfiguration extends AbstractJsr330Configuration {
         return indexTemplates;
     }
 
+    public int getBulkActions() {
+        return bulkActions;
+    }
+
+    public long getBulkSize() {
+        return bulkSize;
+    }
+
+    public int getMaxConcurrentBulkRequests() {
+        return maxConcurrentBulkRequests;
+    }
+
+    public int getDeleteByQuerySlices() {
+        return deleteByQuerySlices;
+    }
+
+    public boolean isTrackIndices() {
+        return trackIndices;
+    }
+
+    public String getSnapshotRepositoryName() {
+        return snapshotRepositoryName;
+    }
+
+    public String getSnapshotRepositoryLocation() {
+        return snapshotRepositoryLocation;
+    }
+
+    public int getMultiGetSize() {
+        return multiGetSize;
+    }
+
+    public int getComparisonThreads() {
+        return comparisonThreads;
+    }
+
+    public int getMaxMismatches() {
+        return maxMismatches;
+    }
+
+    public boolean isScrollComparison() {
+        return scrollComparison;
+    }
+
+    public long getDatasetCacheSize() {
+        return datasetCacheSize;
+    }
+
+    public RefreshPolicy getRefreshPolicy() {
+        return refreshPolicy;
+    }
+
+    public boolean isBulkLoadProfile() {
+        return bulkLoadProfile;
+    }
+
+    public IndexNamespace getIndexNamespace() {
+        return indexNamespace;
+    }
+
+    public ElasticsearchMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
     /**
      * Return a default builder for {@link ElasticsearchConfiguration}.
      */
@@ -75,6 +184,11 @@ public class ElasticsearchConfiguration extends AbstractJsr330Configuration {
 
     public static class Builder {
         private static final String DEFAULT_SERVER = "http://localhost:9200/";
+        private static final int DEFAULT_BULK_ACTIONS = 1000;
+        private static final long DEFAULT_BULK_SIZE = 5L * 1024L * 1024L;
+        private static final int DEFAULT_MAX_CONCURRENT_BULK_REQUESTS = 0;
+        private static final int DEFAULT_MULTI_GET_SIZE = 100;
+        private static final int DEFAULT_SHARED_CLIENT_CONNECTIONS_PER_ROUTE = 8;
 
         private Set<String> servers = Collections.singleton(DEFAULT_SERVER);
         private HttpClientConfig httpClientConfig = null;
@@ -82,6 +196,25 @@ public class ElasticsearchConfiguration extends AbstractJsr330Configuration {
         private boolean deleteAllIndices = false;
         private Map<String, Object> indexSettings = Collections.emptyMap();
         private Map<String, Map<String, Object>> indexTemplates = Collections.emptyMap();
+        private int bulkActions = DEFAULT_BULK_ACTIONS;
+        private long bulkSize = DEFAULT_BULK_SIZE;
+        private int maxConcurrentBulkRequests = DEFAULT_MAX_CONCURRENT_BULK_REQUESTS;
+        private int deleteByQuerySlices = 1;
+        private boolean trackIndices = false;
+        private String snapshotRepositoryName = null;
+        private String snapshotRepositoryLocation = null;
+        private int multiGetSize = DEFAULT_MULTI_GET_SIZE;
+        private int comparisonThreads = 1;
+        private int maxMismatches = 1;
+        private boolean scrollComparison = false;
+        private long datasetCacheSize = 0L;
+        private long requestCompressionThreshold = -1L;
+        private boolean sharedClient = false;
+        private RefreshPolicy refreshPolicy = RefreshPolicy.ALL;
+        private boolean bulkLoadProfile = false;
+        private IndexNamespace indexNamespace = IndexNamespace.NONE;
+        private ElasticsearchMetricsListener metricsListener = ElasticsearchMetricsListener.NONE;
+        private long slowRequestThresholdNanos = -1L;
 
         private Builder() {
         }
@@ -123,6 +256,43 @@ public class ElasticsearchConfiguration extends AbstractJsr330Configuration {
             return this;
         }
 
+        /**
+         * Whether to only delete data from the indices which have been written to or created when inserting data.
+         * <p>
+         * If enabled, deleting data only deletes the documents (or the indices if {@link #deleteAllIndices(boolean)}
+         * is enabled) of the indices mentioned in the inserted datasets instead of <em>all</em> indices.
+         * Indices are only tracked by the {@link DefaultElasticsearchInsertionStrategy}.
+         * <p>
+         * The tracked indices are shared by all operations connecting to the same servers (or using the same
+         * {@link JestClient} passed to {@link #build(JestClient)}) with the same {@link #indexNamespace(IndexNamespace)
+         * index namespace}, so that data inserted for one test is deleted before the next test.
+         *
+         * @param trackIndices Only delete data from indices written to by inserted datasets if {@literal true},
+         *                     delete data from all indices if {@literal false}
+         */
+        public Builder trackIndices(boolean trackIndices) {
+            this.trackIndices = trackIndices;
+            return this;
+        }
+
+        /**
+         * The number of slices used to parallelize deleting documents with the Delete By Query API.
+         * Defaults to {@literal 1}, values greater than {@literal 1} require Elasticsearch 5.1 or later.
+         * <p>
+         * Only used if {@link #deleteAllIndices(boolean)} is {@literal false} and the Elasticsearch node
+         * supports the Delete By Query API (Elasticsearch 5.0 and later).
+         *
+         * @param deleteByQuerySlices The number of slices for deleting documents
+         * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/docs-delete-by-query.html#docs-delete-by-query-manual-slice">Elasticsearch Reference » Document APIs » Delete By Query API » Slicing</a>
+         */
+        public Builder deleteByQuerySlices(int deleteByQuerySlices) {
+            if (deleteByQuerySlices <= 0) {
+                throw new IllegalArgumentException("Number of delete by query slices must be positive.");
+            }
+            this.deleteByQuerySlices = deleteByQuerySlices;
+            return this;
+        }
+
         /**
          * Whether to explicitly create Elasticsearch indices when inserting data.
          *
@@ -146,6 +316,25 @@ public class ElasticsearchConfiguration extends AbstractJsr330Configuration {
             return this;
         }
 
+        /**
+         * Whether to create indices with settings tuned for bulk loading, i. e. without replicas and with disabled
+         * periodic refreshes, if explicitly creating indices is enabled.
+         * <p>
+         * The indices are created with the configured {@link #indexSettings(Map) index settings} and switched to the
+         * bulk load settings before the first bulk request. Their previous {@code number_of_replicas} and
+         * {@code refresh_interval}, e. g. from the index settings or matching {@link #indexTemplates(Map) index templates},
+         * are restored once the dataset has been inserted.
+         * The indices are then refreshed according to the {@link #refreshPolicy(RefreshPolicy) refresh policy},
+         * {@link RefreshPolicy#WAIT_FOR} refreshes the created indices explicitly.
+         *
+         * @param bulkLoadProfile Create indices tuned for bulk loading if {@literal true}
+         * @see #createIndices(boolean)
+         */
+        public Builder bulkLoadProfile(boolean bulkLoadProfile) {
+            this.bulkLoadProfile = bulkLoadProfile;
+            return this;
+        }
+
         /**
          * Collection of index templates to create before inserting data.
          * The index templates will be deleted after data has been inserted.
@@ -159,19 +348,347 @@ public class ElasticsearchConfiguration extends AbstractJsr330Configuration {
             return this;
         }
 
+        /**
+         * The maximum number of documents sent to Elasticsearch in a single bulk request when inserting data.
+         * Defaults to {@literal 1000}, a value of {@literal -1} disables flushing by number of documents.
+         *
+         * @param bulkActions The maximum number of index actions per bulk request
+         * @see #bulkSize(long)
+         * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/docs-bulk.html">Elasticsearch Reference » Document APIs » Bulk API</a>
+         */
+        public Builder bulkActions(int bulkActions) {
+            if (bulkActions <= 0 && bulkActions != -1) {
+                throw new IllegalArgumentException("Bulk actions must be positive or -1.");
+            }
+            this.bulkActions = bulkActions;
+            return this;
+        }
+
+        /**
+         * The maximum size in bytes of a single bulk request when inserting data, i. e. of its UTF-8 encoded body.
+         * A request is sent as soon as it has reached the size, so it may exceed it by its last action.
+         * Defaults to {@literal 5 MiB}, a value of {@literal -1} disables flushing by request size.
+         *
+         * @param bulkSize The maximum size of the UTF-8 encoded bulk request body in bytes
+         * @see #bulkActions(int)
+         */
+        public Builder bulkSize(long bulkSize) {
+            if (bulkSize <= 0L && bulkSize != -1L) {
+                throw new IllegalArgumentException("Bulk size must be positive or -1.");
+            }
+            this.bulkSize = bulkSize;
+            return this;
+        }
+
+        /**
+         * The maximum number of asynchronously executed bulk requests in flight when inserting data.
+         * The next bulk request is being prepared while these requests are executed.
+         * Defaults to {@literal 0}, which executes all bulk requests synchronously on the calling thread.
+         * <p>
+         * If no {@link HttpClientConfig} has been set, the created {@link JestClient} uses a connection pool with one
+         * connection per request and node. Otherwise make sure that the {@link HttpClientConfig} is multi-threaded and
+         * allows enough connections per node for the given number of requests.
+         *
+         * @param maxConcurrentBulkRequests The maximum number of bulk requests in flight
+         * @see #bulkActions(int)
+         * @see #bulkSize(long)
+         */
+        public Builder maxConcurrentBulkRequests(int maxConcurrentBulkRequests) {
+            if (maxConcurrentBulkRequests < 0) {
+                throw new IllegalArgumentException("Maximum number of concurrent bulk requests must not be negative.");
+            }
+            this.maxConcurrentBulkRequests = maxConcurrentBulkRequests;
+            return this;
+        }
+
+        /**
+         * Reset datasets by restoring snapshots from the given file system snapshot repository instead of indexing them again.
+         * <p>
+         * Every distinct dataset is indexed once and the indices written to are stored in a snapshot. Subsequent insertions
+         * of the same dataset close these indices and restore them from the snapshot. The repository location must be
+         * accessible by all Elasticsearch nodes and be listed in their {@code path.repo} setting.
+         *
+         * @param repositoryName     The name of the snapshot repository, which will be created if necessary
+         * @param repositoryLocation The location of the file system snapshot repository on the Elasticsearch nodes
+         * @see SnapshotElasticsearchInsertionStrategy
+         * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/modules-snapshots.html#_shared_file_system_repository">Elasticsearch Reference » Modules » Snapshot And Restore » Shared File System Repository</a>
+         */
+        public Builder snapshotRepository(String repositoryName, String repositoryLocation) {
+            this.snapshotRepositoryName = repositoryName;
+            this.snapshotRepositoryLocation = repositoryLocation;
+            return this;
+        }
+
+        /**
+         * The maximum number of expected documents fetched from Elasticsearch in a single multi get request
+         * when comparing data. Defaults to {@literal 100}.
+         *
+         * @param multiGetSize The maximum number of documents per multi get request
+         * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/docs-multi-get.html">Elasticsearch Reference » Document APIs » Multi Get API</a>
+         */
+        public Builder multiGetSize(int multiGetSize) {
+            if (multiGetSize <= 0) {
+                throw new IllegalArgumentException("Multi get size must be positive.");
+            }
+            this.multiGetSize = multiGetSize;
+            return this;
+        }
+
+        /**
+         * The number of threads used to fetch and compare expected documents concurrently when comparing data.
+         * Every thread processes one multi get request at a time. Defaults to {@literal 1}, which compares
+         * all documents on the calling thread.
+         * <p>
+         * If no {@link HttpClientConfig} has been set, the created {@link JestClient} uses a connection pool with one
+         * connection per thread (or concurrent bulk request, whichever is more) and node. Otherwise make sure that the {@link HttpClientConfig} is multi-threaded and allows
+         * enough connections per node for the given number of threads.
+         *
+         * @param comparisonThreads The number of threads comparing documents
+         * @see #multiGetSize(int)
+         */
+        public Builder comparisonThreads(int comparisonThreads) {
+            if (comparisonThreads <= 0) {
+                throw new IllegalArgumentException("Number of comparison threads must be positive.");
+            }
+            this.comparisonThreads = comparisonThreads;
+            return this;
+        }
+
+        /**
+         * The maximum number of mismatching documents reported when comparing data.
+         * Defaults to {@literal 1}, which fails on the first mismatching document.
+         *
+         * @param maxMismatches The maximum number of mismatches reported in a single assertion error
+         */
+        public Builder maxMismatches(int maxMismatches) {
+            if (maxMismatches <= 0) {
+                throw new IllegalArgumentException("Maximum number of mismatches must be positive.");
+            }
+            this.maxMismatches = maxMismatches;
+            return this;
+        }
+
+        /**
+         * Whether to compare data by reading <em>all</em> documents of the indices mentioned in the expected dataset
+         * instead of fetching the expected documents by their IDs.
+         * <p>
+         * The documents are streamed using the Scroll API, so that documents which are not part of the expected dataset
+         * are reported in addition to missing and differing documents. The number of comparison threads and the multi
+         * get size are not used in this mode.
+         *
+         * @param scrollComparison Compare all documents of the expected indices if {@literal true},
+         *                         compare only the expected documents if {@literal false}
+         * @see #maxMismatches(int)
+         * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/search-request-scroll.html">Elasticsearch Reference » Search APIs » Request Body Search » Scroll</a>
+         */
+        public Builder scrollComparison(boolean scrollComparison) {
+            this.scrollComparison = scrollComparison;
+            return this;
+        }
+
+        /**
+         * The maximum size of the process-wide cache of compiled datasets in characters.
+         * Defaults to {@literal 0}, which disables the cache.
+         * <p>
+         * Datasets are identified by a hash of their content. Inserting a cached dataset sends the cached bulk
+         * request bodies without parsing the dataset again. The least recently used datasets are evicted once
+         * the cache is full. Only used by the {@link DefaultElasticsearchInsertionStrategy}.
+         * <p>
+         * Datasets are buffered while being hashed, unless they're larger than the cache size in bytes. Larger
+         * datasets are indexed while they're being read, without caching them.
+         *
+         * @param datasetCacheSize The maximum total size of the cached bulk request bodies in characters
+         * @see com.github.joschi.nosqlunit.elasticsearch.http.parser.DatasetCache
+         */
+        public Builder datasetCacheSize(long datasetCacheSize) {
+            this.datasetCacheSize = datasetCacheSize;
+            return this;
+        }
+
+        /**
+         * How inserted and deleted documents are made visible to searches, {@link RefreshPolicy#ALL} by default.
+         * The refresh policy applies to every dataset inserted with this configuration.
+         *
+         * @param refreshPolicy The refresh policy
+         */
+        public Builder refreshPolicy(RefreshPolicy refreshPolicy) {
+            if (refreshPolicy == null) {
+                throw new IllegalArgumentException("Refresh policy must not be null.");
+            }
+            this.refreshPolicy = refreshPolicy;
+            return this;
+        }
+
+        /**
+         * Prefix the names of all indices and index templates of the datasets, {@link IndexNamespace#NONE} by default.
+         * <p>
+         * With a namespace, cleaning up only deletes indices or documents in the namespace instead of all indices or
+         * documents, so that tests using different namespaces can share an Elasticsearch cluster.
+         *
+         * @param indexNamespace The namespace of the indices, e.g. {@link IndexNamespace#perProcess()}
+         */
+        public Builder indexNamespace(IndexNamespace indexNamespace) {
+            if (indexNamespace == null) {
+                throw new IllegalArgumentException("Index namespace must not be null.");
+            }
+            this.indexNamespace = indexNamespace;
+            return this;
+        }
+
+        /**
+         * The listener receiving the timings of the phases of inserting, comparing and deleting datasets and the
+         * counters of the bulk requests, {@link ElasticsearchMetricsListener#NONE} by default.
+         *
+         * @param metricsListener The metrics listener, e.g. an {@link ElasticsearchMetrics} instance
+         */
+        public Builder metricsListener(ElasticsearchMetricsListener metricsListener) {
+            if (metricsListener == null) {
+                throw new IllegalArgumentException("Metrics listener must not be null.");
+            }
+            this.metricsListener = metricsListener;
+            return this;
+        }
+
+        /**
+         * Record the latencies of all requests per action type and log every request which takes at least the given
+         * threshold with its URI and payload size, see {@link TracingJestClient}. Disabled by default.
+         * <p>
+         * The {@link JestClient} of the configuration, including a client passed to {@link #build(JestClient)},
+         * is wrapped in a {@link TracingJestClient} if enabled.
+         *
+         * @param slowRequestThreshold The minimum latency of requests to log, {@literal 0} logs all requests and
+         *                             a negative value disables tracing
+         * @param unit                 The time unit of the threshold
+         */
+        public Builder slowRequestThreshold(long slowRequestThreshold, TimeUnit unit) {
+            if (unit == null) {
+                throw new IllegalArgumentException("Time unit must not be null.");
+            }
+            this.slowRequestThresholdNanos = slowRequestThreshold < 0L ? -1L : unit.toNanos(slowRequestThreshold);
+            return this;
+        }
+
+        /**
+         * Compress request bodies with gzip and send them with {@code Content-Encoding: gzip}, if their size is at
+         * least the given number of bytes. This mostly pays off for large bulk and multi get requests sent to remote
+         * Elasticsearch nodes, small request bodies aren't worth the CPU time. Disabled by default.
+         * <p>
+         * Compressed responses are accepted by the blocking HTTP client, which is used for verifying the
+         * expected data, regardless of this setting.
+         * <p>
+         * Can't be used together with node discovery and is ignored if the {@link JestClient} has been passed
+         * to {@link #build(JestClient)}.
+         *
+         * @param requestCompressionThreshold The minimum size of request bodies in bytes to compress,
+         *                                    a negative value disables request compression
+         */
+        public Builder requestCompressionThreshold(long requestCompressionThreshold) {
+            this.requestCompressionThreshold = requestCompressionThreshold;
+            return this;
+        }
+
+        /**
+         * Whether to share the {@link JestClient} and its HTTP connection pools with all other configurations using
+         * the same servers, HTTP client configuration and request compression, for example across rules and test classes.
+         * Custom socket factories and route planners of the HTTP client configuration don't distinguish shared clients.
+         * <p>
+         * Shutting down a shared client only releases the reference of this configuration, the client itself stays open
+         * for other configurations and is shut down when the JVM shuts down. The servers of a shared client can't be
+         * changed with {@link JestClient#setServers(Set)}. Without an explicit
+         * {@link #httpClientConfig(HttpClientConfig) HTTP client configuration}, shared clients are multi-threaded with
+         * at least {@value #DEFAULT_SHARED_CLIENT_CONNECTIONS_PER_ROUTE} connections per Elasticsearch node.
+         *
+         * @param sharedClient Share the {@link JestClient} if {@literal true}, create a new one if {@literal false}
+         */
+        public Builder sharedClient(boolean sharedClient) {
+            this.sharedClient = sharedClient;
+            return this;
+        }
+
+        /**
+         * The number of configurations currently holding a reference on the shared {@link JestClient} which a
+         * configuration built with the current settings of this builder would use.
+         *
+         * @return The number of references on the shared client or {@literal 0} if the client isn't shared
+         * @see #sharedClient(boolean)
+         */
+        public int sharedClientReferences() {
+            return sharedClient ? SharedJestClients.references(getClientKey()) : 0;
+        }
+
         public ElasticsearchConfiguration build() {
-            final JestClient client = getClient();
-            client.setServers(servers);
+            final JestClient client = sharedClient
+                    ? SharedJestClients.acquire(getClientKey(), this::createClient)
+                    : createClient();
+
+            return build(client, new HashSet<>(servers));
+        }
+
+        /**
+         * Build an {@link ElasticsearchConfiguration} using the given, already configured {@link JestClient}.
+         * The configured servers and HTTP client configuration are ignored.
+         *
+         * @param client The {@link JestClient} to use
+         */
+        public ElasticsearchConfiguration build(JestClient client) {
+            return build(client, client);
+        }
+
+        private ElasticsearchConfiguration build(JestClient client, Object clusterKey) {
+            final JestClient configuredClient = slowRequestThresholdNanos < 0L
+                    ? client
+                    : new TracingJestClient(client, slowRequestThresholdNanos, TimeUnit.NANOSECONDS);
+            return new ElasticsearchConfiguration(configuredClient, clusterKey, this);
+        }
 
-            return new ElasticsearchConfiguration(client, deleteAllIndices, createIndices, indexSettings, indexTemplates);
+        private JestClient createClient() {
+            final JestClientFactory clientFactory = requestCompressionThreshold < 0L
+                    ? new JestClientFactory()
+                    : new CompressingJestClientFactory(requestCompressionThreshold);
+            final HttpClientConfig clientConfig = getHttpClientConfig();
+            if (clientConfig != null) {
+                clientFactory.setHttpClientConfig(clientConfig);
+            }
+
+            final JestClient client = clientFactory.getObject();
+            client.setServers(servers);
+            return client;
         }
 
-        private JestClient getClient() {
-            final JestClientFactory clientFactory = new JestClientFactory();
+        private HttpClientConfig getHttpClientConfig() {
             if (httpClientConfig != null) {
-                clientFactory.setHttpClientConfig(httpClientConfig);
+                return httpClientConfig;
             }
-            return clientFactory.getObject();
+
+            // The asynchronous bulk requests and the comparison threads need one connection per node each
+            final int connections = Math.max(comparisonThreads, maxConcurrentBulkRequests);
+            final int connectionsPerRoute = sharedClient
+                    ? Math.max(DEFAULT_SHARED_CLIENT_CONNECTIONS_PER_ROUTE, connections)
+                    : connections;
+            if (connectionsPerRoute <= 1) {
+                return null;
+            }
+
+            return new HttpClientConfig.Builder(servers)
+                    .multiThreaded(true)
+                    .defaultMaxTotalConnectionPerRoute(connectionsPerRoute)
+                    .maxTotalConnection(connectionsPerRoute * servers.size())
+                    .build();
+        }
+
+        private Object getClientKey() {
+            // ClientConfig#equals() doesn't cover the settings of HttpClientConfig. Socket factories and route planners
+            // are left out on purpose, because HttpClientConfig creates new default instances for every configuration.
+            final HttpClientConfig clientConfig = getHttpClientConfig();
+            return Arrays.asList(
+                    servers,
+                    requestCompressionThreshold,
+                    clientConfig,
+                    clientConfig.getMaxTotalConnection(),
+                    clientConfig.getDefaultMaxTotalConnectionPerRoute(),
+                    clientConfig.getMaxTotalConnectionPerRoute(),
+                    clientConfig.getCredentialsProvider(),
+                    clientConfig.getPreemptiveAuthTargetHosts());
         }
     }
 }
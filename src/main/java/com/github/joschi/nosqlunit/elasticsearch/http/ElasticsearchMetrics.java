@@ -0,0 +1,157 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe {@link ElasticsearchMetricsListener} which sums up all metrics in memory.
+ * <p>
+ * Example for inspecting the metrics of a test:
+ * <pre>{@code
+ * ElasticsearchMetrics metrics = new ElasticsearchMetrics();
+ * ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+ *         .metricsListener(metrics)
+ *         .build();
+ * }</pre>
+ */
+public class ElasticsearchMetrics implements ElasticsearchMetricsListener {
+    private final Map<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+    private final Map<Phase, LongAdder> phaseCounts = new EnumMap<>(Phase.class);
+    private final LongAdder bulkRequests = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder indexedDocuments = new LongAdder();
+    private final LongAdder failedActions = new LongAdder();
+
+    public ElasticsearchMetrics() {
+        for (Phase phase : Phase.values()) {
+            phaseNanos.put(phase, new LongAdder());
+            phaseCounts.put(phase, new LongAdder());
+        }
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long durationNanos) {
+        phaseNanos.get(phase).add(durationNanos);
+        phaseCounts.get(phase).increment();
+    }
+
+    @Override
+    public void bulkRequestCompleted(int actions, long bytes, int failedActions) {
+        bulkRequests.increment();
+        bytesSent.add(bytes);
+        indexedDocuments.add(actions - failedActions);
+        this.failedActions.add(failedActions);
+    }
+
+    /**
+     * Add all metrics of the given {@link ElasticsearchMetrics} to these metrics.
+     *
+     * @param metrics The metrics to add
+     */
+    public void add(ElasticsearchMetrics metrics) {
+        for (Phase phase : Phase.values()) {
+            phaseNanos.get(phase).add(metrics.getPhaseNanos(phase));
+            phaseCounts.get(phase).add(metrics.getPhaseCount(phase));
+        }
+        bulkRequests.add(metrics.getBulkRequests());
+        bytesSent.add(metrics.getBytesSent());
+        indexedDocuments.add(metrics.getIndexedDocuments());
+        failedActions.add(metrics.getFailedActions());
+    }
+
+    /**
+     * Reset all metrics to zero.
+     */
+    public void reset() {
+        for (Phase phase : Phase.values()) {
+            phaseNanos.get(phase).reset();
+            phaseCounts.get(phase).reset();
+        }
+        bulkRequests.reset();
+        bytesSent.reset();
+        indexedDocuments.reset();
+        failedActions.reset();
+    }
+
+    /**
+     * The total duration of all completed runs of the given phase in nanoseconds.
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos.get(phase).sum();
+    }
+
+    /**
+     * The number of completed runs of the given phase.
+     */
+    public long getPhaseCount(Phase phase) {
+        return phaseCounts.get(phase).sum();
+    }
+
+    /**
+     * The number of completed bulk requests.
+     */
+    public long getBulkRequests() {
+        return bulkRequests.sum();
+    }
+
+    /**
+     * The total size of the bulk request bodies in bytes.
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * The number of successfully executed bulk actions, i. e. indexed (or deleted) documents.
+     */
+    public long getIndexedDocuments() {
+        return indexedDocuments.sum();
+    }
+
+    /**
+     * The number of failed bulk actions.
+     */
+    public long getFailedActions() {
+        return failedActions.sum();
+    }
+
+    /**
+     * Whether no metrics have been recorded at all.
+     */
+    public boolean isEmpty() {
+        if (getBulkRequests() > 0L) {
+            return false;
+        }
+        for (Phase phase : Phase.values()) {
+            if (getPhaseCount(phase) > 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A human readable summary of the recorded metrics, e.g.
+     * {@literal "bulk_indexing=2x 153 ms, refresh=2x 12 ms, cleanup=2x 40 ms, bulk requests=4, bytes sent=81920, indexed documents=2000, failed actions=0"}.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            final long count = getPhaseCount(phase);
+            if (count > 0L) {
+                sb.append(phase.name().toLowerCase(Locale.ROOT))
+                        .append('=').append(count).append("x ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase))).append(" ms, ");
+            }
+        }
+        return sb.append("bulk requests=").append(getBulkRequests())
+                .append(", bytes sent=").append(getBytesSent())
+                .append(", indexed documents=").append(getIndexedDocuments())
+                .append(", failed actions=").append(getFailedActions())
+                .toString();
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Receives timings and counters while datasets are inserted, compared and deleted.
+ * <p>
+ * Listeners are called from the test threads and from the I/O threads completing asynchronous bulk requests,
+ * so implementations must be thread-safe and shouldn't block. All methods do nothing by default.
+ *
+ * @see ElasticsearchMetrics
+ * @see ElasticsearchConfiguration.Builder#metricsListener(ElasticsearchMetricsListener)
+ */
+public interface ElasticsearchMetricsListener {
+    /**
+     * A listener ignoring all metrics.
+     */
+    ElasticsearchMetricsListener NONE = new ElasticsearchMetricsListener() {
+    };
+
+    /**
+     * The phases of inserting, comparing and deleting datasets.
+     */
+    enum Phase {
+        /**
+         * Parsing a dataset into bulk request bodies for the dataset cache. Datasets which aren't cached are parsed
+         * while they're indexed, so that parsing is part of {@link #BULK_INDEXING}.
+         */
+        PARSE,
+        /**
+         * Creating and deleting the configured index templates.
+         */
+        TEMPLATES,
+        /**
+         * Streaming the documents of a dataset to Elasticsearch until all bulk requests have completed.
+         */
+        BULK_INDEXING,
+        /**
+         * Waiting for the explicitly created indices to become active and restoring the settings
+         * of the bulk load profile. Only reported if indices have been created.
+         */
+        INDEX_CREATION,
+        /**
+         * Refreshing the indices after a dataset has been inserted.
+         */
+        REFRESH,
+        /**
+         * Deleting all documents or indices, including the refresh afterwards.
+         */
+        CLEANUP,
+        /**
+         * Comparing the expected documents with the documents stored in Elasticsearch.
+         */
+        COMPARISON
+    }
+
+    /**
+     * A phase has completed. Failed phases aren't reported, except for comparisons which found mismatches.
+     *
+     * @param phase         The completed phase
+     * @param durationNanos The duration of the phase in nanoseconds
+     */
+    default void phaseCompleted(Phase phase, long durationNanos) {
+    }
+
+    /**
+     * A bulk request has completed, successfully or not.
+     *
+     * @param actions       The number of actions in the request
+     * @param bytes         The size of the (uncompressed) request body in bytes
+     * @param failedActions The number of actions which failed, all actions if the whole request failed
+     */
+    default void bulkRequestCompleted(int actions, long bytes, int failedActions) {
+    }
+
+    /**
+     * A listener forwarding all metrics to the given listeners in order.
+     *
+     * @param listeners The listeners receiving the metrics
+     */
+    static ElasticsearchMetricsListener compose(ElasticsearchMetricsListener... listeners) {
+        final List<ElasticsearchMetricsListener> delegates = Arrays.asList(listeners.clone());
+        return new ElasticsearchMetricsListener() {
+            @Override
+            public void phaseCompleted(Phase phase, long durationNanos) {
+                for (ElasticsearchMetricsListener delegate : delegates) {
+                    delegate.phaseCompleted(phase, durationNanos);
+                }
+            }
+
+            @Override
+            public void bulkRequestCompleted(int actions, long bytes, int failedActions) {
+                for (ElasticsearchMetricsListener delegate : delegates) {
+                    delegate.bulkRequestCompleted(actions, bytes, failedActions);
+                }
+            }
+        };
+    }
+}
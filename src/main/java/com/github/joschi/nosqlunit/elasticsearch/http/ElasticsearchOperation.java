@@ -8,14 +8,17 @@ import com.lordofthejars.nosqlunit.core.NoSqlAssertionError;
 import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
 import io.searchbox.core.Bulk;
 import io.searchbox.core.BulkResult;
+import io.searchbox.core.ClearScroll;
 import io.searchbox.core.Count;
 import io.searchbox.core.CountResult;
 import io.searchbox.core.Delete;
+import io.searchbox.core.DeleteByQuery;
 import io.searchbox.core.DocumentResult;
+import io.searchbox.core.Ping;
 import io.searchbox.core.Search;
-import io.searchbox.core.SearchResult;
 import io.searchbox.core.SearchScroll;
 import io.searchbox.indices.DeleteIndex;
 import io.searchbox.indices.Refresh;
@@ -23,27 +26,88 @@ import io.searchbox.params.Parameters;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 public class ElasticsearchOperation extends
         AbstractCustomizableDatabaseOperation<ElasticsearchConnectionCallback, JestClient> {
 
+    private static final String MATCH_ALL_QUERY = "{\"query\":{\"match_all\":{}}}";
+    private static final int SCROLL_PAGE_SIZE = 1000;
+    private static final String SCROLL_KEEP_ALIVE = "1m";
+
+    /**
+     * The indices written to by inserted datasets per Elasticsearch cluster and index namespace.
+     * Rules and their operations are created for every test, so the indices inserted by one test have to outlive
+     * its operation until they are deleted by the operation of the next test.
+     */
+    private static final Map<List<Object>, Set<String>> INSERTED_INDICES = new ConcurrentHashMap<>();
+
     private final JestClient client;
     private final boolean deleteAllIndices;
+    private final int deleteByQuerySlices;
+    private final boolean trackIndices;
+    private final RefreshPolicy refreshPolicy;
+    private final Collection<String> namespaceIndices;
+    private final ElasticsearchMetricsListener metricsListener;
+    private final Set<String> insertedIndices;
+    private volatile Boolean deleteByQuerySupported = null;
 
     public ElasticsearchOperation(JestClient client,
                                   boolean deleteAllIndices,
                                   boolean createIndices,
                                   Map<String, Object> indexSettings,
                                   Map<String, Map<String, Object>> templates) {
-        this.client = client;
-        this.deleteAllIndices = deleteAllIndices;
+        this(ElasticsearchConfiguration.remoteElasticsearch()
+                .deleteAllIndices(deleteAllIndices)
+                .createIndices(createIndices)
+                .indexSettings(indexSettings)
+                .indexTemplates(templates)
+                .build(client));
+    }
+
+    public ElasticsearchOperation(ElasticsearchConfiguration configuration) {
+        this(configuration, configuration.getMetricsListener());
+    }
+
+    /**
+     * Create a new {@link ElasticsearchOperation} which reports its metrics to the given listener
+     * instead of the {@link ElasticsearchConfiguration#getMetricsListener() configured one}.
+     *
+     * @param configuration   The configuration of the operation
+     * @param metricsListener The listener receiving the metrics of all inserted, compared and deleted datasets
+     */
+    public ElasticsearchOperation(ElasticsearchConfiguration configuration, ElasticsearchMetricsListener metricsListener) {
+        this.client = configuration.getClient();
+        this.deleteAllIndices = configuration.isDeleteAllIndices();
+        this.deleteByQuerySlices = configuration.getDeleteByQuerySlices();
+        this.trackIndices = configuration.isTrackIndices();
+        this.refreshPolicy = configuration.getRefreshPolicy();
+        final IndexNamespace indexNamespace = configuration.getIndexNamespace();
+        this.metricsListener = metricsListener;
+        this.insertedIndices = INSERTED_INDICES.computeIfAbsent(
+                Arrays.asList(configuration.getClusterKey(), indexNamespace),
+                key -> ConcurrentHashMap.newKeySet());
+        this.namespaceIndices = indexNamespace.isEnabled()
+                ? Collections.singletonList(indexNamespace.getIndexPattern())
+                : Collections.emptyList();
 
-        setInsertionStrategy(new DefaultElasticsearchInsertionStrategy(createIndices, indexSettings, templates));
-        setComparisonStrategy(new DefaultElasticsearchComparisonStrategy());
+        if (configuration.getSnapshotRepositoryName() != null) {
+            setInsertionStrategy(new SnapshotElasticsearchInsertionStrategy(configuration, insertedIndices, metricsListener));
+        } else {
+            setInsertionStrategy(new DefaultElasticsearchInsertionStrategy(configuration, insertedIndices, metricsListener));
+        }
+        setComparisonStrategy(new DefaultElasticsearchComparisonStrategy(configuration));
     }
 
     @Override
@@ -62,64 +126,203 @@ public class ElasticsearchOperation extends
     @Override
     public void deleteAll() {
         try {
+            final long start = System.nanoTime();
             clearDocuments();
+            metricsListener.phaseCompleted(ElasticsearchMetricsListener.Phase.CLEANUP, System.nanoTime() - start);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
     private void clearDocuments() throws IOException {
-        final long documentCount = documentCount();
+        // An empty collection of indices means all indices, an index namespace restricts them to its indices
+        final Collection<String> indices;
+        if (trackIndices) {
+            if (insertedIndices.isEmpty()) {
+                return;
+            }
+            indices = new ArrayList<>(insertedIndices);
+        } else {
+            indices = namespaceIndices;
+        }
 
         if (deleteAllIndices) {
-            final DeleteIndex deleteIndex = new DeleteIndex.Builder("*").build();
+            final DeleteIndex deleteIndex = new DeleteIndex.Builder(indices.isEmpty() ? "*" : String.join(",", indices))
+                    .setParameter(Parameters.IGNORE_UNAVAILABLE, true)
+                    .build();
             final JestResult result = client.execute(deleteIndex);
             if (!result.isSucceeded()) {
                 throw new IllegalStateException(result.getErrorMessage());
             }
 
-            refreshNode();
-        } else if (documentCount > 0) {
-            final Collection<BulkableAction<DocumentResult>> bulkActions = new ArrayList<>();
-
-            final Search initialScroll = new Search.Builder("{\"query\":{\"match_all\" : {}}}")
-                    .setParameter(Parameters.SCROLL, "1m")
-                    .setParameter(Parameters.SIZE, documentCount)
-                    .build();
-            final SearchResult scrollResponse = client.execute(initialScroll);
-            if (!scrollResponse.isSucceeded()) {
-                throw new IllegalStateException(scrollResponse.getErrorMessage());
+            // Deleted indices are gone immediately, other indices only need to be refreshed for RefreshPolicy.ALL
+            if (refreshPolicy == RefreshPolicy.ALL) {
+                refreshNode(namespaceIndices);
             }
-            bulkActions.addAll(prepareDelete(scrollResponse));
+        } else if (isDeleteByQuerySupported()) {
+            deleteByQuery(indices);
+        } else if (documentCount(indices) > 0) {
+            deleteByScroll(indices);
+            if (refreshPolicy != RefreshPolicy.NONE) {
+                refreshNode(indices);
+            }
+        }
+
+        if (trackIndices) {
+            insertedIndices.removeAll(indices);
+        } else {
+            insertedIndices.clear();
+        }
+    }
+
+    /**
+     * Delete all documents on the server side using the Delete By Query API (Elasticsearch 5.0 and later).
+     *
+     * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/docs-delete-by-query.html">Elasticsearch Reference » Document APIs » Delete By Query API</a>
+     */
+    private void deleteByQuery(Collection<String> indices) throws IOException {
+        final DeleteByQuery.Builder deleteByQuery = new DeleteByQuery.Builder(MATCH_ALL_QUERY)
+                .addIndex(indices)
+                .ignoreUnavailable(true)
+                .setParameter("conflicts", "proceed")
+                .setParameter(Parameters.REFRESH, refreshPolicy != RefreshPolicy.NONE);
+        if (deleteByQuerySlices > 1) {
+            deleteByQuery.setParameter("slices", deleteByQuerySlices);
+        }
+
+        final JestResult result = client.execute(deleteByQuery.build());
+        if (!result.isSucceeded()) {
+            throw new IllegalStateException(result.getErrorMessage());
+        }
 
-            final String scrollId = scrollResponse.getJsonObject().getAsJsonPrimitive("_scroll_id").getAsString();
+        final JsonArray failures = result.getJsonObject().getAsJsonArray("failures");
+        if (failures != null && failures.size() > 0) {
+            throw new IllegalStateException("Error while deleting documents: " + failures);
+        }
+    }
+
+    /**
+     * Delete all documents page by page using the Scroll API and bulk requests, for servers without
+     * support for the Delete By Query API.
+     * <p>
+     * The documents of a page are deleted asynchronously while the next page is being fetched.
+     * The search context is always released once all pages have been processed or an error occurred,
+     * after the last pending delete has completed.
+     */
+    private void deleteByScroll(Collection<String> indices) throws IOException {
+        final Search initialScroll = new Search.Builder(MATCH_ALL_QUERY)
+                .addIndex(indices)
+                .ignoreUnavailable(true)
+                .setParameter(Parameters.SCROLL, SCROLL_KEEP_ALIVE)
+                .setParameter(Parameters.SIZE, SCROLL_PAGE_SIZE)
+                .build();
+
+        String scrollId = null;
+        CompletableFuture<BulkResult> pendingDelete = CompletableFuture.completedFuture(null);
+        try {
+            JestResult result = client.execute(initialScroll);
             while (true) {
-                final SearchScroll searchScroll = new SearchScroll.Builder(scrollId, "1m").build();
-                final JestResult result = client.execute(searchScroll);
                 if (!result.isSucceeded()) {
                     throw new IllegalStateException(result.getErrorMessage());
                 }
+                // The scroll ID may change with every response, so always use the latest one
+                scrollId = result.getJsonObject().getAsJsonPrimitive("_scroll_id").getAsString();
 
                 final Collection<BulkableAction<DocumentResult>> deleteRequests = prepareDelete(result);
-
                 if (deleteRequests.isEmpty()) {
                     break;
-                } else {
-                    bulkActions.addAll(deleteRequests);
                 }
+
+                checkBulkResult(await(pendingDelete));
+                pendingDelete = deleteDocumentsAsync(deleteRequests);
+
+                final SearchScroll searchScroll = new SearchScroll.Builder(scrollId, SCROLL_KEEP_ALIVE).build();
+                result = client.execute(searchScroll);
+            }
+            checkBulkResult(await(pendingDelete));
+        } finally {
+            // Don't leave a bulk delete running in the background if fetching the next page failed
+            awaitQuietly(pendingDelete);
+            if (scrollId != null) {
+                clearScroll(scrollId);
+            }
+        }
+    }
+
+    private CompletableFuture<BulkResult> deleteDocumentsAsync(Collection<BulkableAction<DocumentResult>> deleteRequests) {
+        final CompletableFuture<BulkResult> future = new CompletableFuture<>();
+        final Bulk bulkRequest = new Bulk.Builder().addAction(deleteRequests).build();
+        client.executeAsync(bulkRequest, new JestResultHandler<BulkResult>() {
+            @Override
+            public void completed(BulkResult result) {
+                future.complete(result);
             }
 
-            if (!bulkActions.isEmpty()) {
-                final Bulk.Builder bulkRequestBuilder = new Bulk.Builder().addAction(bulkActions);
-                final BulkResult bulkResponse = client.execute(bulkRequestBuilder.build());
-                if (!bulkResponse.isSucceeded()) {
-                    throw new IllegalStateException(bulkResponse.getErrorMessage());
-                }
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    private static BulkResult await(CompletableFuture<BulkResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while deleting documents");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error while deleting documents", cause);
+        }
+    }
+
+    private static void awaitQuietly(CompletableFuture<BulkResult> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The error of the bulk request is superseded by the error which aborted the deletion
+        }
+    }
+
+    private static void checkBulkResult(BulkResult bulkResult) {
+        if (bulkResult != null && !bulkResult.isSucceeded()) {
+            throw new IllegalStateException(bulkResult.getErrorMessage());
+        }
+    }
+
+    private void clearScroll(String scrollId) {
+        final ClearScroll clearScroll = new ClearScroll.Builder().addScrollId(scrollId).build();
+        try {
+            client.execute(clearScroll);
+        } catch (IOException e) {
+            // Best effort, the search context will be released by Elasticsearch once the keep alive has expired
+        }
+    }
+
+    private boolean isDeleteByQuerySupported() throws IOException {
+        if (deleteByQuerySupported == null) {
+            final JestResult result = client.execute(new Ping.Builder().build());
+            if (!result.isSucceeded()) {
+                throw new IllegalStateException(result.getErrorMessage());
             }
 
-            refreshNode();
+            final String version = result.getJsonObject()
+                    .getAsJsonObject("version")
+                    .getAsJsonPrimitive("number")
+                    .getAsString();
+            final int majorVersion = Integer.parseInt(version.substring(0, version.indexOf('.')));
+            deleteByQuerySupported = majorVersion >= 5;
         }
 
+        return deleteByQuerySupported;
     }
 
     private Collection<BulkableAction<DocumentResult>> prepareDelete(JestResult result) {
@@ -140,16 +343,24 @@ public class ElasticsearchOperation extends
         return bulkActions;
     }
 
-    private long documentCount() throws IOException {
-        final CountResult countResult = client.execute(new Count.Builder().build());
+    private long documentCount(Collection<String> indices) throws IOException {
+        final Count count = new Count.Builder()
+                .addIndex(indices)
+                .ignoreUnavailable(true)
+                .build();
+        final CountResult countResult = client.execute(count);
         if (!countResult.isSucceeded()) {
             throw new IllegalStateException(countResult.getErrorMessage());
         }
         return countResult.getCount().longValue();
     }
 
-    private void refreshNode() throws IOException {
-        final JestResult result = client.execute(new Refresh.Builder().build());
+    private void refreshNode(Collection<String> indices) throws IOException {
+        final Refresh refresh = new Refresh.Builder()
+                .addIndex(indices)
+                .ignoreUnavailable(true)
+                .build();
+        final JestResult result = client.execute(refresh);
         if (!result.isSucceeded()) {
             throw new IllegalStateException(result.getErrorMessage());
         }
@@ -157,9 +368,14 @@ public class ElasticsearchOperation extends
 
     @Override
     public boolean databaseIs(InputStream expectedData) {
+        final long start = System.nanoTime();
         try {
-            return executeComparison(() -> client, expectedData);
+            final boolean result = executeComparison(() -> client, expectedData);
+            metricsListener.phaseCompleted(ElasticsearchMetricsListener.Phase.COMPARISON, System.nanoTime() - start);
+            return result;
         } catch (NoSqlAssertionError e) {
+            // Finding mismatches is a regular result of the comparison
+            metricsListener.phaseCompleted(ElasticsearchMetricsListener.Phase.COMPARISON, System.nanoTime() - start);
             throw e;
         } catch (Throwable e) {
             throw new IllegalStateException(e);
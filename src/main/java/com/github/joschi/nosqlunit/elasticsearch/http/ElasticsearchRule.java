@@ -2,16 +2,43 @@ package com.github.joschi.nosqlunit.elasticsearch.http;
 
 import com.lordofthejars.nosqlunit.core.AbstractNoSqlTestRule;
 import com.lordofthejars.nosqlunit.core.DatabaseOperation;
+import com.lordofthejars.nosqlunit.util.DefaultClasspathLocationBuilder;
 import io.searchbox.client.JestClient;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
+/**
+ * JUnit rule inserting, comparing and deleting datasets in Elasticsearch.
+ * <p>
+ * The {@link ElasticsearchMetrics} of all tests of a test class are summed up and logged once the last test
+ * of the class has run, in addition to being reported to the configured {@link ElasticsearchMetricsListener}.
+ * <p>
+ * Default datasets may be gzip or Zstandard compressed, e.g. {@code MyTest#myTest.json.gz} or
+ * {@code MyTest-expected.json.zst}. Default datasets in the newline delimited JSON format of the Bulk API
+ * may be used, too, e.g. {@code MyTest#myTest.ndjson} or {@code MyTest#myTest.ndjson.gz}. The extensions of the
+ * inserted and the expected default datasets are resolved independently of each other.
+ */
 public class ElasticsearchRule extends AbstractNoSqlTestRule {
 
     private static final String EXTENSION = "json";
-
+    // Datasets in the newline delimited JSON format of the Bulk API are detected by their content,
+    // see DataReader#read(InputStream)
+    private static final String BULK_EXTENSION = "ndjson";
+    // Compressed datasets are decompressed while they're read, so they can be used as default datasets, too
+    private static final List<String> EXTENSIONS = Arrays.asList(
+            EXTENSION, EXTENSION + ".gz", EXTENSION + ".zst",
+            BULK_EXTENSION, BULK_EXTENSION + ".gz", BULK_EXTENSION + ".zst");
+    private static final String DATASET_SUFFIX = ".";
+    private static final String EXPECTED_DATASET_SUFFIX = "-expected.";
+
+    private final ElasticsearchMetrics testMetrics = new ElasticsearchMetrics();
     private DatabaseOperation<? extends JestClient> databaseOperation;
+    private volatile String workingExtension = EXTENSION;
 
     public static Builder newElasticsearchRule() {
         return new Builder();
@@ -86,13 +113,8 @@ public class ElasticsearchRule extends AbstractNoSqlTestRule {
 
     public ElasticsearchRule(ElasticsearchConfiguration elasticsearchConfiguration) {
         super(elasticsearchConfiguration.getConnectionIdentifier());
-        this.databaseOperation = new ElasticsearchOperation(
-                elasticsearchConfiguration.getClient(),
-                elasticsearchConfiguration.isDeleteAllIndices(),
-                elasticsearchConfiguration.isCreateIndices(),
-                elasticsearchConfiguration.getIndexSettings(),
-                elasticsearchConfiguration.getIndexTemplates()
-        );
+        this.databaseOperation = new ElasticsearchOperation(elasticsearchConfiguration,
+                ElasticsearchMetricsListener.compose(elasticsearchConfiguration.getMetricsListener(), testMetrics));
     }
 
     /*With JUnit 10 is impossible to get target from a Rule, it seems that future versions will support it. For now constructor is apporach is the only way.*/
@@ -101,6 +123,54 @@ public class ElasticsearchRule extends AbstractNoSqlTestRule {
         setTarget(target);
     }
 
+    @Override
+    public Statement apply(Statement base, FrameworkMethod method, Object target) {
+        // The datasets are inserted before and the expected datasets are loaded after the base statement,
+        // so the extension of the expected datasets is only used from the base statement on
+        final Statement testStatement = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                workingExtension = defaultDatasetExtension(method, EXPECTED_DATASET_SUFFIX);
+                base.evaluate();
+            }
+        };
+        final Statement statement = super.apply(testStatement, method, target);
+        final Class<?> testClass = target == null ? method.getMethod().getDeclaringClass() : target.getClass();
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                workingExtension = defaultDatasetExtension(method, DATASET_SUFFIX);
+                try {
+                    statement.evaluate();
+                } finally {
+                    TestClassMetrics.testFinished(testClass, testMetrics);
+                    testMetrics.reset();
+                }
+            }
+        };
+    }
+
+    /**
+     * The extension of the default datasets of the given test method with the given suffix ({@code "."} for the
+     * inserted and {@code "-expected."} for the expected datasets), i. e. the extension of the first dataset found
+     * at the default locations of the method or its class. Plain JSON datasets take precedence over gzip and
+     * Zstandard compressed datasets ({@code *.json.gz} and {@code *.json.zst}) and bulk datasets
+     * ({@code *.ndjson}, {@code *.ndjson.gz} and {@code *.ndjson.zst}) at the same location.
+     */
+    private static String defaultDatasetExtension(FrameworkMethod method, String suffix) {
+        final Class<?> testClass = method.getMethod().getDeclaringClass();
+        final String classLocation = DefaultClasspathLocationBuilder.defaultClassAnnotatedClasspathLocation(method);
+        final String methodLocation = DefaultClasspathLocationBuilder.defaultMethodAnnotatedClasspathLocation(method, classLocation, suffix);
+        for (String location : Arrays.asList(methodLocation, classLocation + suffix)) {
+            for (String extension : EXTENSIONS) {
+                if (testClass.getResource(location + extension) != null) {
+                    return extension;
+                }
+            }
+        }
+        return EXTENSION;
+    }
+
     @Override
     public DatabaseOperation getDatabaseOperation() {
         return this.databaseOperation;
@@ -108,7 +178,7 @@ public class ElasticsearchRule extends AbstractNoSqlTestRule {
 
     @Override
     public String getWorkingExtension() {
-        return EXTENSION;
+        return workingExtension;
     }
 
     @Override
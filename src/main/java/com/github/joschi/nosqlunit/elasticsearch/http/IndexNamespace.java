@@ -0,0 +1,127 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * A prefix for the names of all indices and index templates used by the datasets, so that tests running in parallel
+ * against the same Elasticsearch cluster, e.g. in several Surefire forks, don't see or delete each other's documents.
+ * <p>
+ * The {@code indexName} of every document in the inserted and expected datasets is prefixed transparently,
+ * the comparison of the expected documents only counts documents in the namespace and
+ * {@link ElasticsearchOperation#deleteAll()} only deletes indices or documents in the namespace.
+ * Tests accessing indices directly have to use {@link #indexName(String)}.
+ * <p>
+ * Aliases defined in the index settings or templates are not prefixed.
+ *
+ * @see ElasticsearchConfiguration.Builder#indexNamespace(IndexNamespace)
+ */
+public final class IndexNamespace {
+    /**
+     * No namespace, index names are used as they are.
+     */
+    public static final IndexNamespace NONE = new IndexNamespace("");
+
+    private static final Pattern VALID_PREFIX = Pattern.compile("[a-z0-9][a-z0-9_.+-]*");
+    private static final String PROCESS_PREFIX = "p" + processId() + '-'
+            + Integer.toHexString(ThreadLocalRandom.current().nextInt(0x100000, 0x1000000)) + '-';
+
+    private final String prefix;
+
+    private IndexNamespace(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * A namespace with the given prefix, e.g. {@literal "fork1-"}.
+     *
+     * @param prefix The prefix of the index names, which must be a valid lowercase index name
+     */
+    public static IndexNamespace prefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix must not be null.");
+        }
+        if (!VALID_PREFIX.matcher(prefix).matches()) {
+            throw new IllegalArgumentException("Prefix must be a valid lowercase index name: " + prefix);
+        }
+        return new IndexNamespace(prefix);
+    }
+
+    /**
+     * A namespace unique to the current JVM, e.g. {@literal "p4711-a3f09c-"}, which separates the indices of
+     * Surefire forks and builds running in parallel.
+     */
+    public static IndexNamespace perProcess() {
+        return new IndexNamespace(PROCESS_PREFIX);
+    }
+
+    /**
+     * A namespace unique to the current JVM and the calling thread, e.g. {@literal "p4711-a3f09c-t12-"}, which
+     * additionally separates the indices of tests running in parallel in the same JVM.
+     * <p>
+     * The thread is the thread calling this method, usually the one building the {@link ElasticsearchConfiguration}.
+     */
+    public static IndexNamespace perThread() {
+        return new IndexNamespace(PROCESS_PREFIX + 't' + Thread.currentThread().getId() + '-');
+    }
+
+    /**
+     * The prefix of the index names, empty for {@link #NONE}.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Whether index names are prefixed at all.
+     */
+    public boolean isEnabled() {
+        return !prefix.isEmpty();
+    }
+
+    /**
+     * The name of the given index in this namespace.
+     *
+     * @param indexName The name of the index in the dataset
+     */
+    public String indexName(String indexName) {
+        return prefix.isEmpty() ? indexName : prefix + indexName;
+    }
+
+    /**
+     * The wildcard expression matching all indices in this namespace, e.g. {@literal "p4711-a3f09c-*"}.
+     */
+    public String getIndexPattern() {
+        return prefix + '*';
+    }
+
+    private static String processId() {
+        // The name of the runtime is "<pid>@<hostname>" on all common JVMs
+        final String name = ManagementFactory.getRuntimeMXBean().getName();
+        final int separator = name.indexOf('@');
+        return (separator > 0 ? name.substring(0, separator) : name).toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return prefix.equals(((IndexNamespace) o).prefix);
+    }
+
+    @Override
+    public int hashCode() {
+        return prefix.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "IndexNamespace{prefix='" + prefix + "'}";
+    }
+}
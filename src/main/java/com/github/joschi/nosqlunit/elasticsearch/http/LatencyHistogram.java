@@ -0,0 +1,113 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of request latencies with exponentially growing buckets, i. e. the upper bound of every
+ * bucket is twice the upper bound of the previous bucket, starting with one microsecond.
+ * <p>
+ * Percentiles are reported as the upper bound of the bucket they fall into, so they're accurate within a factor of two.
+ *
+ * @see TracingJestClient#getLatencies()
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record the latency of a single request.
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(long nanos) {
+        final long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0L);
+        buckets[Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * The number of recorded requests.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * The total latency of all recorded requests in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * The highest recorded latency in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * The upper bound of the given percentile of the recorded latencies in nanoseconds.
+     *
+     * @param percentile The percentile between {@literal 0.0} and {@literal 100.0}, e.g. {@literal 99.0}
+     * @return The upper bound of the percentile or {@literal 0} if no latencies have been recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0.0d || percentile > 100.0d) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+
+        final long[] counts = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+
+        final long rank = Math.max((long) Math.ceil(total * percentile / 100.0d), 1L);
+        long cumulative = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                // The bucket can't be more precise than the highest latency recorded
+                return Math.min(TimeUnit.MICROSECONDS.toNanos(1L << i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * A human readable summary of the histogram, e.g. {@literal "count=12, mean=3.1 ms, p50<=4.1 ms, p99<=16.4 ms, max=14.2 ms"}.
+     */
+    @Override
+    public String toString() {
+        final long requests = getCount();
+        return "count=" + requests
+                + ", mean=" + millis(requests == 0L ? 0L : getTotalNanos() / requests)
+                + ", p50<=" + millis(getPercentileNanos(50.0d))
+                + ", p99<=" + millis(getPercentileNanos(99.0d))
+                + ", max=" + millis(getMaxNanos());
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000.0d);
+    }
+}
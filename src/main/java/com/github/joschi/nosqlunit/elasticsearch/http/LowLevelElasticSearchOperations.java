@@ -3,54 +3,165 @@ package com.github.joschi.nosqlunit.elasticsearch.http;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestClientFactory;
 import io.searchbox.client.JestResult;
-import io.searchbox.cluster.State;
+import io.searchbox.client.config.HttpClientConfig;
+import io.searchbox.cluster.Health;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 public class LowLevelElasticSearchOperations {
     private static final int NUM_RETRIES_TO_CHECK_SERVER_UP = 3;
+    private static final int WAIT_TIME_TO_CHECK_SERVER_UP = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 50L;
+    private static final long MAX_BACKOFF_MILLIS = 2000L;
+    private static final int MAX_HEALTH_TIMEOUT_SECONDS = 10;
+    private static final int CONNECTION_TIMEOUT_MILLIS = 1000;
 
-    public static void assertThatConnectionToElasticsearchIsPossible(String server) {
-        assertThatConnectionToElasticsearchIsPossible(server, NUM_RETRIES_TO_CHECK_SERVER_UP);
+    public static long assertThatConnectionToElasticsearchIsPossible(String server) {
+        return assertThatConnectionToElasticsearchIsPossible(server, NUM_RETRIES_TO_CHECK_SERVER_UP);
     }
 
-    public static void assertThatConnectionToElasticsearchIsPossible(Set<String> servers) {
-        assertThatConnectionToElasticsearchIsPossible(servers, NUM_RETRIES_TO_CHECK_SERVER_UP);
+    public static long assertThatConnectionToElasticsearchIsPossible(Set<String> servers) {
+        return assertThatConnectionToElasticsearchIsPossible(servers, NUM_RETRIES_TO_CHECK_SERVER_UP);
     }
 
-    public static void assertThatConnectionToElasticsearchIsPossible(String server, int numRetries) {
-        assertThatConnectionToElasticsearchIsPossible(Collections.singleton(server), NUM_RETRIES_TO_CHECK_SERVER_UP, numRetries, TimeUnit.SECONDS);
+    public static long assertThatConnectionToElasticsearchIsPossible(String server, int numRetries) {
+        return assertThatConnectionToElasticsearchIsPossible(Collections.singleton(server), numRetries, WAIT_TIME_TO_CHECK_SERVER_UP, TimeUnit.SECONDS);
     }
 
-    public static void assertThatConnectionToElasticsearchIsPossible(Set<String> servers, int numRetries) {
-        assertThatConnectionToElasticsearchIsPossible(servers, NUM_RETRIES_TO_CHECK_SERVER_UP, numRetries, TimeUnit.SECONDS);
+    public static long assertThatConnectionToElasticsearchIsPossible(Set<String> servers, int numRetries) {
+        return assertThatConnectionToElasticsearchIsPossible(servers, numRetries, WAIT_TIME_TO_CHECK_SERVER_UP, TimeUnit.SECONDS);
     }
 
-    public static void assertThatConnectionToElasticsearchIsPossible(Set<String> servers, int numRetries, int waitTime, TimeUnit waitUnit) {
-        final JestClientFactory clientFactory = new JestClientFactory();
-        final JestClient jestClient = clientFactory.getObject();
+    /**
+     * Assert that the Elasticsearch cluster becomes ready within {@code numRetries * waitTime}.
+     *
+     * @return The time in milliseconds until the Elasticsearch cluster was ready
+     * @see #waitUntilElasticsearchIsReady(Set, long, TimeUnit)
+     */
+    public static long assertThatConnectionToElasticsearchIsPossible(Set<String> servers, int numRetries, int waitTime, TimeUnit waitUnit) {
+        return waitUntilElasticsearchIsReady(servers, (long) numRetries * waitTime, waitUnit);
+    }
+
+    /**
+     * Wait until the Elasticsearch cluster has at least the health status {@code yellow}.
+     * <p>
+     * The cluster health is probed with {@code wait_for_status=yellow}, so that Elasticsearch answers as soon as the
+     * cluster is ready. Failed probes, for example because the node isn't accepting connections yet, are retried with
+     * an exponential backoff with jitter until the given timeout has elapsed.
+     *
+     * @param servers The URLs of the Elasticsearch nodes to connect to
+     * @param timeout The maximum time to wait for the Elasticsearch cluster
+     * @param unit    The time unit of {@code timeout}
+     * @return The time in milliseconds until the Elasticsearch cluster was ready
+     * @throws AssertionError if the Elasticsearch cluster wasn't ready within the given timeout
+     */
+    public static long waitUntilElasticsearchIsReady(Set<String> servers, long timeout, TimeUnit unit) {
+        return waitUntilElasticsearchIsReady(servers, createClient(servers), timeout, unit);
+    }
+
+    /**
+     * Wait until the Elasticsearch cluster has at least the health status {@code yellow} and trace the health probes
+     * with a {@link TracingJestClient}, which logs the probes taking at least the given threshold and the latency
+     * histogram of all probes.
+     *
+     * @param servers              The URLs of the Elasticsearch nodes to connect to
+     * @param timeout              The maximum time to wait for the Elasticsearch cluster
+     * @param unit                 The time unit of {@code timeout}
+     * @param slowRequestThreshold The minimum latency of health probes to log, {@literal 0} logs all probes
+     * @param thresholdUnit        The time unit of {@code slowRequestThreshold}
+     * @return The time in milliseconds until the Elasticsearch cluster was ready
+     * @throws AssertionError if the Elasticsearch cluster wasn't ready within the given timeout
+     * @see #waitUntilElasticsearchIsReady(Set, long, TimeUnit)
+     */
+    public static long waitUntilElasticsearchIsReady(Set<String> servers, long timeout, TimeUnit unit,
+                                                     long slowRequestThreshold, TimeUnit thresholdUnit) {
+        final JestClient jestClient = new TracingJestClient(createClient(servers), slowRequestThreshold, thresholdUnit);
+        return waitUntilElasticsearchIsReady(servers, jestClient, timeout, unit);
+    }
+
+    private static long waitUntilElasticsearchIsReady(Set<String> servers, JestClient jestClient, long timeout, TimeUnit unit) {
         try {
-            jestClient.setServers(servers);
-            for (int i = 0; i < numRetries; i++) {
-                try {
-                    final State request = new State.Builder().build();
-                    final JestResult result = jestClient.execute(request);
-
-                    if (result.isSucceeded()) {
-                        return;
-                    }
-                } catch (Exception e) {
-                    Uninterruptibles.sleepUninterruptibly(waitTime, waitUnit);
-                }
+            final long timeToReady = probeUntilReady(jestClient, timeout, unit);
+            if (timeToReady < 0L) {
+                throw new AssertionError("Couldn't connect to Elasticsearch at " + servers);
             }
+            return timeToReady;
         } finally {
-            if (jestClient != null) {
-                jestClient.shutdownClient();
+            jestClient.shutdownClient();
+        }
+    }
+
+    /**
+     * Wait until the Elasticsearch cluster has at least the health status {@code yellow}, probing it with the given
+     * {@link JestClient}, e.g. the (possibly {@link TracingJestClient tracing}) client of an
+     * {@link ElasticsearchConfiguration}. The client isn't shut down.
+     * <p>
+     * A health probe waits for the cluster until the read timeout of the client at most.
+     *
+     * @param jestClient The client used to probe the cluster health
+     * @param timeout    The maximum time to wait for the Elasticsearch cluster
+     * @param unit       The time unit of {@code timeout}
+     * @return The time in milliseconds until the Elasticsearch cluster was ready
+     * @throws AssertionError if the Elasticsearch cluster wasn't ready within the given timeout
+     * @see #waitUntilElasticsearchIsReady(Set, long, TimeUnit)
+     */
+    public static long waitUntilElasticsearchIsReady(JestClient jestClient, long timeout, TimeUnit unit) {
+        final long timeToReady = probeUntilReady(jestClient, timeout, unit);
+        if (timeToReady < 0L) {
+            throw new AssertionError("Couldn't connect to Elasticsearch");
+        }
+        return timeToReady;
+    }
+
+    /**
+     * @return The time in milliseconds until the Elasticsearch cluster was ready or {@literal -1} after the timeout
+     */
+    private static long probeUntilReady(JestClient jestClient, long timeout, TimeUnit unit) {
+        final long start = System.nanoTime();
+        final long deadline = start + unit.toNanos(timeout);
+
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        long remainingMillis;
+        while ((remainingMillis = NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0L) {
+            if (isReady(jestClient, remainingMillis)) {
+                return NANOSECONDS.toMillis(System.nanoTime() - start);
             }
+
+            final long jitteredBackoffMillis = ThreadLocalRandom.current().nextLong(backoffMillis / 2L, backoffMillis + 1L);
+            final long sleepMillis = Math.min(jitteredBackoffMillis, NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            Uninterruptibles.sleepUninterruptibly(sleepMillis, MILLISECONDS);
+            backoffMillis = Math.min(backoffMillis * 2L, MAX_BACKOFF_MILLIS);
         }
 
-        throw new AssertionError("Couldn't connect to Elasticsearch at " + servers);
+        return -1L;
+    }
+
+    private static boolean isReady(JestClient jestClient, long remainingMillis) {
+        final int healthTimeoutSeconds = (int) Math.min(MILLISECONDS.toSeconds(remainingMillis), MAX_HEALTH_TIMEOUT_SECONDS);
+        final Health request = new Health.Builder()
+                .waitForStatus(Health.Status.YELLOW)
+                .timeout(healthTimeoutSeconds)
+                .build();
+        try {
+            final JestResult result = jestClient.execute(request);
+            return result.isSucceeded();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static JestClient createClient(Set<String> servers) {
+        final JestClientFactory clientFactory = new JestClientFactory();
+        clientFactory.setHttpClientConfig(new HttpClientConfig.Builder(servers)
+                .connTimeout(CONNECTION_TIMEOUT_MILLIS)
+                .readTimeout((int) TimeUnit.SECONDS.toMillis(MAX_HEALTH_TIMEOUT_SECONDS) + CONNECTION_TIMEOUT_MILLIS)
+                .build());
+        return clientFactory.getObject();
     }
 }
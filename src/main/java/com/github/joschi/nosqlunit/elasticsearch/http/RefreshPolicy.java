@@ -0,0 +1,31 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+/**
+ * How inserted and deleted documents are made visible to searches.
+ *
+ * @see ElasticsearchConfiguration.Builder#refreshPolicy(RefreshPolicy)
+ * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/docs-refresh.html">Elasticsearch Reference » Document APIs » ?refresh</a>
+ */
+public enum RefreshPolicy {
+    /**
+     * Refresh all indices after inserting or deleting documents.
+     */
+    ALL,
+    /**
+     * Refresh only the indices written to by a dataset after inserting its documents, and only the indices
+     * documents have been deleted from after deleting documents.
+     */
+    TOUCHED_INDICES,
+    /**
+     * Send the last bulk request of a dataset with {@code refresh=wait_for} once all other bulk requests have
+     * completed, instead of forcing a refresh. Only the shards written to by the last bulk request are waited for,
+     * other shards become visible with their next periodic refresh.
+     * <p>
+     * Deleted documents are handled like {@link #TOUCHED_INDICES}.
+     */
+    WAIT_FOR,
+    /**
+     * Never refresh explicitly, for example for tests which only write data.
+     */
+    NONE
+}
@@ -0,0 +1,115 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of {@link JestClient Jest clients} which are shared by all configurations with the same key,
+ * so that their HTTP connection pools are reused across {@link ElasticsearchRule rules} and test classes.
+ * <p>
+ * Every {@link #acquire(Object, Supplier) acquired} client holds a reference on the shared client which is released
+ * by {@link JestClient#shutdownClient()}. The servers of shared clients can't be changed, because the change would
+ * affect all other references. Shared clients without references are kept open for later rules and are
+ * shut down when the JVM shuts down.
+ */
+final class SharedJestClients {
+    private static final Map<Object, SharedClient> CLIENTS = new HashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SharedJestClients::shutdownAll, "elasticsearch-shared-clients-shutdown"));
+    }
+
+    private SharedJestClients() {
+    }
+
+    /**
+     * Acquire a reference on the shared client with the given key, creating the client if necessary.
+     *
+     * @param key           The key of the shared client, must implement {@link Object#equals(Object)} and {@link Object#hashCode()}
+     * @param clientFactory The factory creating the client if there's no shared client with the given key
+     * @return A {@link JestClient} which releases its reference on the shared client when it's shut down
+     */
+    static synchronized JestClient acquire(Object key, Supplier<JestClient> clientFactory) {
+        final SharedClient sharedClient = CLIENTS.computeIfAbsent(key, k -> new SharedClient(clientFactory.get()));
+        sharedClient.references++;
+
+        return new ClientReference(sharedClient);
+    }
+
+    /**
+     * The number of references on the shared client with the given key.
+     *
+     * @param key The key of the shared client
+     */
+    static synchronized int references(Object key) {
+        final SharedClient sharedClient = CLIENTS.get(key);
+        return sharedClient == null ? 0 : sharedClient.references;
+    }
+
+    private static synchronized void release(SharedClient sharedClient) {
+        sharedClient.references--;
+    }
+
+    private static void shutdownAll() {
+        final List<SharedClient> sharedClients;
+        synchronized (SharedJestClients.class) {
+            sharedClients = new ArrayList<>(CLIENTS.values());
+            CLIENTS.clear();
+        }
+
+        for (SharedClient sharedClient : sharedClients) {
+            sharedClient.client.shutdownClient();
+        }
+    }
+
+    private static class SharedClient {
+        private final JestClient client;
+        private int references = 0;
+
+        SharedClient(JestClient client) {
+            this.client = client;
+        }
+    }
+
+    private static class ClientReference implements JestClient {
+        private final SharedClient sharedClient;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        ClientReference(SharedClient sharedClient) {
+            this.sharedClient = sharedClient;
+        }
+
+        @Override
+        public <T extends JestResult> T execute(Action<T> clientRequest) throws IOException {
+            return sharedClient.client.execute(clientRequest);
+        }
+
+        @Override
+        public <T extends JestResult> void executeAsync(Action<T> clientRequest, JestResultHandler<? super T> jestResultHandler) {
+            sharedClient.client.executeAsync(clientRequest, jestResultHandler);
+        }
+
+        @Override
+        public void shutdownClient() {
+            if (released.compareAndSet(false, true)) {
+                release(sharedClient);
+            }
+        }
+
+        @Override
+        public void setServers(Set<String> servers) {
+            throw new IllegalStateException("The servers of a shared client can't be changed");
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.indices.CloseIndex;
+import io.searchbox.params.Parameters;
+import io.searchbox.snapshot.CreateSnapshot;
+import io.searchbox.snapshot.CreateSnapshotRepository;
+import io.searchbox.snapshot.DeleteSnapshot;
+import io.searchbox.snapshot.GetSnapshot;
+import io.searchbox.snapshot.RestoreSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Insertion strategy which indexes every distinct dataset only once and snapshots the indices it has written to
+ * into a file system snapshot repository. Later insertions of the same dataset restore the snapshot instead of
+ * parsing and indexing the dataset again.
+ * <p>
+ * Datasets are identified by a hash of their content and the index settings and templates used for inserting them.
+ * Restoring a snapshot replaces the indices of the dataset completely, so this strategy is meant to be used with
+ * {@link com.lordofthejars.nosqlunit.core.LoadStrategyEnum#CLEAN_INSERT}. Concurrent insertions of the same dataset
+ * are executed one after another. Snapshots are tracked per cluster and repository location and are only restored
+ * if they still exist, otherwise the dataset is indexed and snapshotted again.
+ *
+ * @see ElasticsearchConfiguration.Builder#snapshotRepository(String, String)
+ * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/modules-snapshots.html">Elasticsearch Reference » Modules » Snapshot And Restore</a>
+ */
+public class SnapshotElasticsearchInsertionStrategy implements ElasticsearchInsertionStrategy {
+    private static final Gson GSON = new Gson();
+    private static final String SNAPSHOT_PREFIX = "nosqlunit-";
+
+    /**
+     * Snapshots created in this JVM and the indices contained in them, keyed by cluster, repository and snapshot name.
+     */
+    private static final Map<List<Object>, Set<String>> SNAPSHOTS = new ConcurrentHashMap<>();
+    /**
+     * Locks serializing the insertion of the same dataset into the same repository of the same cluster.
+     */
+    private static final ConcurrentMap<List<Object>, Object> SNAPSHOT_LOCKS = new ConcurrentHashMap<>();
+    /**
+     * Repositories registered in this JVM, keyed by cluster, repository name and location.
+     */
+    private static final Set<List<Object>> REPOSITORIES = ConcurrentHashMap.newKeySet();
+
+    private final ElasticsearchConfiguration configuration;
+    private final Set<String> insertedIndices;
+    private final ElasticsearchMetricsListener metricsListener;
+
+    public SnapshotElasticsearchInsertionStrategy(ElasticsearchConfiguration configuration, Set<String> insertedIndices) {
+        this(configuration, insertedIndices, configuration.getMetricsListener());
+    }
+
+    /**
+     * @param configuration   The configuration for inserting data, its metrics listener is ignored
+     * @param insertedIndices The (thread-safe) set receiving the names of the indices written to
+     * @param metricsListener The listener receiving the metrics of all indexed datasets
+     */
+    public SnapshotElasticsearchInsertionStrategy(ElasticsearchConfiguration configuration,
+                                                  Set<String> insertedIndices,
+                                                  ElasticsearchMetricsListener metricsListener) {
+        if (configuration.getSnapshotRepositoryName() == null || configuration.getSnapshotRepositoryLocation() == null) {
+            throw new IllegalArgumentException("Snapshot repository name and location are required.");
+        }
+
+        this.configuration = configuration;
+        this.insertedIndices = insertedIndices;
+        this.metricsListener = metricsListener;
+    }
+
+    @Override
+    public void insert(ElasticsearchConnectionCallback connection, InputStream dataset) throws Throwable {
+        final JestClient client = connection.client();
+        final String repository = configuration.getSnapshotRepositoryName();
+        final byte[] data;
+        try (InputStream inputStream = dataset) {
+            data = ByteStreams.toByteArray(inputStream);
+        }
+
+        final String snapshot = snapshotName(data);
+        final List<Object> snapshotKey = Arrays.asList(repositoryKey(), snapshot);
+        // Concurrent insertions of a dataset must not create its snapshot twice or restore it while it's being created
+        synchronized (SNAPSHOT_LOCKS.computeIfAbsent(snapshotKey, key -> new Object())) {
+            final Set<String> snapshotIndices = SNAPSHOTS.get(snapshotKey);
+            if (snapshotIndices != null && snapshotExists(client, repository, snapshot)) {
+                restoreSnapshot(client, repository, snapshot, snapshotIndices);
+                insertedIndices.addAll(snapshotIndices);
+            } else {
+                final DataReader dataReader = new DataReader(client, configuration, metricsListener);
+                try {
+                    dataReader.read(new ByteArrayInputStream(data));
+                } finally {
+                    insertedIndices.addAll(dataReader.getIndices());
+                }
+
+                final Set<String> indices = dataReader.getIndices();
+                if (!indices.isEmpty()) {
+                    createSnapshot(client, repository, snapshot, indices);
+                    SNAPSHOTS.put(snapshotKey, indices);
+                }
+            }
+        }
+    }
+
+    /**
+     * The identity of the snapshot repository, consisting of the cluster, the repository name and its location.
+     */
+    private List<Object> repositoryKey() {
+        return Arrays.asList(
+                configuration.getClusterKey(),
+                configuration.getSnapshotRepositoryName(),
+                configuration.getSnapshotRepositoryLocation());
+    }
+
+    private String snapshotName(byte[] data) {
+        final Hasher hasher = Hashing.sha256().newHasher()
+                .putBytes(data)
+                .putBoolean(configuration.isCreateIndices())
+                .putString(configuration.getIndexNamespace().getPrefix(), StandardCharsets.UTF_8)
+                .putString(GSON.toJson(configuration.getIndexSettings(), Map.class), StandardCharsets.UTF_8)
+                .putString(GSON.toJson(configuration.getIndexTemplates(), Map.class), StandardCharsets.UTF_8);
+
+        return SNAPSHOT_PREFIX + hasher.hash().toString();
+    }
+
+    private void createSnapshot(JestClient client, String repository, String snapshot, Set<String> indices) throws IOException {
+        createRepository(client, repository);
+
+        // Remove stale snapshots from previous runs, the result is irrelevant
+        client.execute(new DeleteSnapshot.Builder(repository, snapshot).build());
+
+        final Map<String, Object> settings = ImmutableMap.of(
+                "indices", String.join(",", indices),
+                "include_global_state", false);
+        final CreateSnapshot createSnapshot = new CreateSnapshot.Builder(repository, snapshot)
+                .settings(settings)
+                .waitForCompletion(true)
+                .build();
+        final JestResult result = client.execute(createSnapshot);
+        if (!result.isSucceeded()) {
+            throw new IllegalStateException("Error while creating snapshot \"" + snapshot + "\": " + result.getErrorMessage());
+        }
+    }
+
+    /**
+     * Check whether the snapshot still exists, it might have been deleted or the cluster might have been replaced
+     * since the snapshot has been created.
+     */
+    private boolean snapshotExists(JestClient client, String repository, String snapshot) throws IOException {
+        final GetSnapshot getSnapshot = new GetSnapshot.Builder(repository)
+                .addSnapshot(snapshot)
+                .build();
+        final JestResult result = client.execute(getSnapshot);
+        if (result.isSucceeded()) {
+            final JsonArray snapshots = result.getJsonObject().getAsJsonArray("snapshots");
+            if (snapshots != null && snapshots.size() == 1) {
+                final JsonElement state = snapshots.get(0).getAsJsonObject().get("state");
+                if (state != null && "SUCCESS".equals(state.getAsString())) {
+                    return true;
+                }
+            }
+        }
+
+        // The repository might be gone along with the snapshot, so register it again before creating the snapshot
+        REPOSITORIES.remove(repositoryKey());
+        return false;
+    }
+
+    private void createRepository(JestClient client, String repository) throws IOException {
+        final List<Object> repositoryKey = repositoryKey();
+        if (REPOSITORIES.contains(repositoryKey)) {
+            return;
+        }
+
+        synchronized (REPOSITORIES) {
+            if (REPOSITORIES.contains(repositoryKey)) {
+                return;
+            }
+
+            final Map<String, Object> settings = ImmutableMap.of(
+                    "type", "fs",
+                    "settings", ImmutableMap.of("location", configuration.getSnapshotRepositoryLocation()));
+            final CreateSnapshotRepository createRepository = new CreateSnapshotRepository.Builder(repository)
+                    .settings(settings)
+                    .build();
+            final JestResult result = client.execute(createRepository);
+            if (!result.isSucceeded()) {
+                throw new IllegalStateException("Error while creating snapshot repository \"" + repository + "\": " + result.getErrorMessage());
+            }
+
+            REPOSITORIES.add(repositoryKey);
+        }
+    }
+
+    private void restoreSnapshot(JestClient client, String repository, String snapshot, Set<String> indices) throws IOException {
+        final String joinedIndices = String.join(",", indices);
+
+        // Open indices can't be restored, indices which don't exist (anymore) are created by the restore operation
+        final CloseIndex closeIndex = new CloseIndex.Builder(joinedIndices)
+                .setParameter(Parameters.IGNORE_UNAVAILABLE, true)
+                .build();
+        final JestResult closeResult = client.execute(closeIndex);
+        if (!closeResult.isSucceeded()) {
+            throw new IllegalStateException("Error while closing indices " + joinedIndices + ": " + closeResult.getErrorMessage());
+        }
+
+        final Map<String, Object> settings = ImmutableMap.of(
+                "indices", joinedIndices,
+                "include_global_state", false);
+        final RestoreSnapshot restoreSnapshot = new RestoreSnapshot.Builder(repository, snapshot)
+                .settings(settings)
+                .setParameter("wait_for_completion", true)
+                .build();
+        final JestResult result = client.execute(restoreSnapshot);
+        if (!result.isSucceeded()) {
+            throw new IllegalStateException("Error while restoring snapshot \"" + snapshot + "\": " + result.getErrorMessage());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.TestClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sums up the {@link ElasticsearchMetrics} of all tests of a test class and logs a summary once the last test of the
+ * class has run.
+ * <p>
+ * Test classes whose tests didn't all run, e.g. because of filters, are summarized when the JVM shuts down.
+ */
+final class TestClassMetrics {
+    private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchRule.class);
+    private static final Map<Class<?>, TestClassMetrics> TEST_CLASSES = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(TestClassMetrics::logRemaining, "elasticsearch-metrics-summary"));
+    }
+
+    private final Class<?> testClass;
+    private final ElasticsearchMetrics metrics = new ElasticsearchMetrics();
+    private final AtomicInteger remainingTests;
+
+    private TestClassMetrics(Class<?> testClass) {
+        this.testClass = testClass;
+        this.remainingTests = new AtomicInteger(numberOfTests(testClass));
+    }
+
+    /**
+     * Add the metrics of a finished test to the metrics of its test class.
+     *
+     * @param testClass   The class of the finished test
+     * @param testMetrics The metrics recorded while the test was running
+     */
+    static void testFinished(Class<?> testClass, ElasticsearchMetrics testMetrics) {
+        final TestClassMetrics testClassMetrics = TEST_CLASSES.computeIfAbsent(testClass, TestClassMetrics::new);
+        testClassMetrics.metrics.add(testMetrics);
+
+        if (testClassMetrics.remainingTests.decrementAndGet() <= 0 && TEST_CLASSES.remove(testClass, testClassMetrics)) {
+            testClassMetrics.log();
+        }
+    }
+
+    private void log() {
+        if (!metrics.isEmpty()) {
+            LOG.info("Elasticsearch metrics of {}: {}", testClass.getName(), metrics);
+        }
+    }
+
+    private static void logRemaining() {
+        for (TestClassMetrics testClassMetrics : TEST_CLASSES.values()) {
+            testClassMetrics.log();
+        }
+        TEST_CLASSES.clear();
+    }
+
+    private static int numberOfTests(Class<?> testClass) {
+        int tests = 0;
+        for (FrameworkMethod method : new TestClass(testClass).getAnnotatedMethods(Test.class)) {
+            if (method.getAnnotation(Ignore.class) == null) {
+                tests++;
+            }
+        }
+        return tests;
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.joschi.nosqlunit.elasticsearch.http;
+
+import com.google.common.base.Utf8;
+import com.google.gson.Gson;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JestClient} which records the latencies of all requests in a {@link LatencyHistogram} per action type,
+ * e.g. {@code Bulk}, {@code Count} or {@code Refresh}, and logs every request which takes at least the given
+ * threshold with its HTTP method, URI and payload size.
+ * <p>
+ * Asynchronous requests are measured until their result handler is called. The histograms are logged when the
+ * client is shut down.
+ * <pre>{@code
+ * ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+ *         .slowRequestThreshold(500L, TimeUnit.MILLISECONDS)
+ *         .build();
+ * TracingJestClient client = (TracingJestClient) configuration.getClient();
+ * }</pre>
+ *
+ * @see ElasticsearchConfiguration.Builder#slowRequestThreshold(long, TimeUnit)
+ */
+public class TracingJestClient implements JestClient {
+    private static final Logger LOG = LoggerFactory.getLogger(TracingJestClient.class);
+    private static final Gson GSON = new Gson();
+    private static final String JEST_PACKAGE = "io.searchbox.";
+
+    private final JestClient client;
+    private final long slowRequestThresholdNanos;
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * @param client               The {@link JestClient} executing the requests
+     * @param slowRequestThreshold The minimum latency of requests to log, {@literal 0} logs all requests
+     * @param unit                 The time unit of the threshold
+     */
+    public TracingJestClient(JestClient client, long slowRequestThreshold, TimeUnit unit) {
+        if (client == null) {
+            throw new IllegalArgumentException("Client must not be null.");
+        }
+        if (slowRequestThreshold < 0L) {
+            throw new IllegalArgumentException("Slow request threshold must not be negative.");
+        }
+        this.client = client;
+        this.slowRequestThresholdNanos = unit.toNanos(slowRequestThreshold);
+    }
+
+    @Override
+    public <T extends JestResult> T execute(Action<T> clientRequest) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            return client.execute(clientRequest);
+        } finally {
+            completed(clientRequest, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T extends JestResult> void executeAsync(Action<T> clientRequest, JestResultHandler<? super T> jestResultHandler) {
+        final long start = System.nanoTime();
+        client.executeAsync(clientRequest, new JestResultHandler<T>() {
+            @Override
+            public void completed(T result) {
+                TracingJestClient.this.completed(clientRequest, System.nanoTime() - start);
+                jestResultHandler.completed(result);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                TracingJestClient.this.completed(clientRequest, System.nanoTime() - start);
+                jestResultHandler.failed(ex);
+            }
+        });
+    }
+
+    @Override
+    public void shutdownClient() {
+        if (!latencies.isEmpty()) {
+            LOG.info("Latencies of Elasticsearch requests: {}", getLatencies());
+        }
+        client.shutdownClient();
+    }
+
+    @Override
+    public void setServers(Set<String> servers) {
+        client.setServers(servers);
+    }
+
+    /**
+     * The latency histograms of all requests executed so far, keyed by the type of the action.
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return Collections.unmodifiableMap(new TreeMap<>(latencies));
+    }
+
+    private void completed(Action<?> action, long nanos) {
+        latencies.computeIfAbsent(actionType(action), type -> new LatencyHistogram()).record(nanos);
+
+        if (nanos >= slowRequestThresholdNanos && LOG.isWarnEnabled()) {
+            // The payload is only serialized again for slow requests
+            final String payload = action.getData(GSON);
+            LOG.warn("Slow Elasticsearch request took {} ms: {} {} ({} bytes)",
+                    TimeUnit.NANOSECONDS.toMillis(nanos), action.getRestMethodName(), action.getURI(),
+                    payload == null ? 0 : Utf8.encodedLength(payload));
+        }
+    }
+
+    /**
+     * The name of the Jest action class, e.g. {@code Bulk} for the pre-built bulk requests of the
+     * {@link com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader}.
+     */
+    private static String actionType(Action<?> action) {
+        Class<?> actionClass = action.getClass();
+        while (actionClass.getSuperclass() != null && !actionClass.getName().startsWith(JEST_PACKAGE)) {
+            actionClass = actionClass.getSuperclass();
+        }
+        return actionClass.getName().startsWith(JEST_PACKAGE)
+                ? actionClass.getSimpleName()
+                : action.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,207 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.inmemory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.rules.ExternalResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An in-memory stand-in for a single Elasticsearch 5.x node, served over HTTP on the loopback interface.
+ * <p>
+ * Only the subset of the Elasticsearch REST API used by this library is supported: bulk requests, getting single and
+ * multiple documents, counts, searches with scrolling, refreshes, creating and deleting indices and index templates,
+ * index settings and the cluster health and state. Documents are visible immediately, and searches, counts and delete
+ * by query requests only support {@code match_all} queries. Other requests are rejected with {@code 400 Bad Request}.
+ * <p>
+ * It can be used as a JUnit {@link org.junit.ClassRule class rule} together with an {@code ElasticsearchRule}:
+ * <pre>{@code
+ * @ClassRule
+ * public static InMemoryElasticsearch inMemoryElasticsearch = InMemoryElasticsearch.newInMemoryElasticsearchRule().build();
+ *
+ * @Rule
+ * public ElasticsearchRule elasticsearchRule = ElasticsearchRule.newElasticsearchRule()
+ *         .remoteElasticsearch(inMemoryElasticsearch.getUrl());
+ * }</pre>
+ * All data is discarded when the in-memory Elasticsearch is stopped.
+ */
+public class InMemoryElasticsearch extends ExternalResource implements AutoCloseable {
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final int port;
+    private InMemoryEngine engine;
+    private ExecutorService executor;
+    private HttpServer server;
+
+    private InMemoryElasticsearch(int port) {
+        this.port = port;
+    }
+
+    public static Builder newInMemoryElasticsearchRule() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int port = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * The port of the HTTP listener. Default: {@literal 0} (any free port)
+         *
+         * @param port The port of the HTTP listener or {@literal 0} for any free port
+         */
+        public Builder port(int port) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("Port must be between 0 and 65535.");
+            }
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Build an {@link InMemoryElasticsearch} which is started by {@link #start()} or when it's used as a JUnit rule.
+         */
+        public InMemoryElasticsearch build() {
+            return new InMemoryElasticsearch(port);
+        }
+    }
+
+    /**
+     * Start the HTTP listener with an empty in-memory Elasticsearch.
+     *
+     * @throws IllegalStateException if it's already running
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("In-memory Elasticsearch is already running.");
+        }
+
+        engine = new InMemoryEngine();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "in-memory-elasticsearch-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stop the HTTP listener and discard all data.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+            engine = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * The URL of the running in-memory Elasticsearch, e.g. {@literal http://127.0.0.1:54321}.
+     *
+     * @throws IllegalStateException if it isn't running
+     */
+    public synchronized String getUrl() {
+        if (server == null) {
+            throw new IllegalStateException("In-memory Elasticsearch isn't running.");
+        }
+        final InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    @Override
+    protected void before() throws Throwable {
+        start();
+    }
+
+    @Override
+    protected void after() {
+        stop();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final String method = exchange.getRequestMethod();
+            final URI uri = exchange.getRequestURI();
+            final String body = readBody(exchange);
+
+            final InMemoryEngine engine;
+            synchronized (this) {
+                engine = this.engine;
+            }
+            if (engine == null) {
+                exchange.sendResponseHeaders(503, -1L);
+                return;
+            }
+            final InMemoryEngine.Response response = engine.handle(method, uri.getPath(), parameters(uri.getRawQuery()), body);
+
+            if ("HEAD".equals(method) || response.getBody() == null) {
+                exchange.sendResponseHeaders(response.getStatus(), -1L);
+            } else {
+                final byte[] responseBody = response.getBody().toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(response.getStatus(), responseBody.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(responseBody);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        final boolean gzip = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        try (InputStream inputStream = gzip ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parameters(String rawQuery) throws UnsupportedEncodingException {
+        final Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+
+        for (String parameter : rawQuery.split("&")) {
+            final int separator = parameter.indexOf('=');
+            final String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            final String value = separator < 0 ? "true" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.inmemory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * An error reported by the {@link InMemoryEngine} in the format of an Elasticsearch error response.
+ */
+class InMemoryElasticsearchException extends RuntimeException {
+    private final int status;
+    private final String type;
+    private final String index;
+
+    InMemoryElasticsearchException(int status, String type, String reason) {
+        this(status, type, reason, null);
+    }
+
+    InMemoryElasticsearchException(int status, String type, String reason, String index) {
+        super(reason);
+        this.status = status;
+        this.type = type;
+        this.index = index;
+    }
+
+    static InMemoryElasticsearchException indexNotFound(String index) {
+        return new InMemoryElasticsearchException(404, "index_not_found_exception", "no such index", index);
+    }
+
+    static InMemoryElasticsearchException badRequest(String reason) {
+        return new InMemoryElasticsearchException(400, "illegal_argument_exception", reason);
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    /**
+     * The error object of an Elasticsearch response, e.g. {@code {"type":"index_not_found_exception","reason":"no such index"}}.
+     */
+    JsonObject toError() {
+        final JsonObject cause = new JsonObject();
+        cause.addProperty("type", type);
+        cause.addProperty("reason", getMessage());
+        if (index != null) {
+            cause.addProperty("index", index);
+        }
+        return cause;
+    }
+
+    /**
+     * The complete Elasticsearch error response.
+     */
+    JsonObject toResponse() {
+        final JsonArray rootCause = new JsonArray();
+        rootCause.add(toError());
+
+        final JsonObject error = toError();
+        error.add("root_cause", rootCause);
+
+        final JsonObject response = new JsonObject();
+        response.add("error", error);
+        response.addProperty("status", status);
+        return response;
+    }
+}
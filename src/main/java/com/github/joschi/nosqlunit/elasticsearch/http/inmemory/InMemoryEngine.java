@@ -0,0 +1,913 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.inmemory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static com.github.joschi.nosqlunit.elasticsearch.http.inmemory.InMemoryElasticsearchException.badRequest;
+import static com.github.joschi.nosqlunit.elasticsearch.http.inmemory.InMemoryElasticsearchException.indexNotFound;
+
+/**
+ * An in-memory implementation of the subset of the Elasticsearch 5.x REST API used by this library.
+ * <p>
+ * Documents are stored per index in concurrent maps and are visible immediately, so refreshes have no effect.
+ * Searches, counts and delete by query requests only support {@code match_all} queries. The settings of matching
+ * index templates are applied to new indices, mappings are ignored.
+ */
+class InMemoryEngine {
+    static final String VERSION = "5.5.2";
+    static final String CLUSTER_NAME = "in-memory";
+
+    private static final String ALL_INDICES = "_all";
+    private static final int DEFAULT_SEARCH_SIZE = 10;
+    private static final List<String> BULK_OPERATIONS = Arrays.asList("create", "delete", "index", "update");
+
+    private final JsonParser parser = new JsonParser();
+    private final ConcurrentMap<String, InMemoryIndex> indices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, JsonElement> templates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ScrollContext> scrollContexts = new ConcurrentHashMap<>();
+    private final AtomicLong scrollIds = new AtomicLong();
+
+    /**
+     * Handle a request of the Elasticsearch REST API.
+     *
+     * @param method     The HTTP method of the request
+     * @param path       The decoded path of the request
+     * @param parameters The decoded query parameters of the request
+     * @param body       The body of the request, may be {@literal null}
+     * @return The response to the request
+     */
+    Response handle(String method, String path, Map<String, String> parameters, String body) {
+        final List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+
+        try {
+            return route(method, segments, parameters, body == null || body.trim().isEmpty() ? null : body);
+        } catch (InMemoryElasticsearchException e) {
+            return new Response(e.getStatus(), e.toResponse());
+        } catch (JsonParseException | IllegalStateException | ClassCastException e) {
+            return new Response(400, new InMemoryElasticsearchException(400, "parse_exception", String.valueOf(e.getMessage())).toResponse());
+        }
+    }
+
+    private Response route(String method, List<String> path, Map<String, String> parameters, String body) {
+        if (path.isEmpty()) {
+            return info();
+        }
+
+        final String first = path.get(0);
+        switch (first) {
+            case "_bulk":
+                return bulk(null, null, body);
+            case "_mget":
+                return multiGet(null, null, body);
+            case "_cluster":
+                return cluster(method, path, parameters);
+            case "_template":
+                return template(method, path, body);
+            case "_search":
+                if (path.size() == 2 && "scroll".equals(path.get(1))) {
+                    return "DELETE".equals(method) ? clearScroll(parameters, body) : scroll(parameters, body);
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (first.startsWith("_") && !ALL_INDICES.equals(first)) {
+            // APIs like "/_refresh" or "/_search" apply to all indices
+            final List<String> allIndicesPath = new ArrayList<>(path.size() + 1);
+            allIndicesPath.add(ALL_INDICES);
+            allIndicesPath.addAll(path);
+            return indexRequest(method, allIndicesPath, parameters, body);
+        }
+
+        return indexRequest(method, path, parameters, body);
+    }
+
+    private Response indexRequest(String method, List<String> path, Map<String, String> parameters, String body) {
+        final String indexExpression = path.get(0);
+        switch (path.size()) {
+            case 1:
+                return indexManagement(method, indexExpression, parameters, body);
+            case 2:
+                if (path.get(1).startsWith("_")) {
+                    return endpoint(method, indexExpression, null, path.get(1), parameters, body);
+                } else if ("POST".equals(method)) {
+                    return indexDocument(indexExpression, path.get(1), null, false, parseJson(body));
+                }
+                break;
+            case 3:
+                if (path.get(2).startsWith("_")) {
+                    return endpoint(method, indexExpression, path.get(1), path.get(2), parameters, body);
+                }
+                return document(method, indexExpression, path.get(1), path.get(2), parameters, body);
+            case 4:
+                if ("_update".equals(path.get(3)) && "POST".equals(method)) {
+                    return writeDocument("update", indexExpression, path.get(1), path.get(2), parseJson(body));
+                } else if ("_create".equals(path.get(3)) && ("PUT".equals(method) || "POST".equals(method))) {
+                    return indexDocument(indexExpression, path.get(1), path.get(2), true, parseJson(body));
+                }
+                break;
+            default:
+                break;
+        }
+
+        throw unsupported(method, path);
+    }
+
+    private Response indexManagement(String method, String indexExpression, Map<String, String> parameters, String body) {
+        switch (method) {
+            case "PUT":
+            case "POST":
+                return createIndex(indexExpression, body);
+            case "DELETE":
+                return deleteIndices(indexExpression, parameters);
+            case "HEAD":
+                return new Response(indices.containsKey(indexExpression) ? 200 : 404, null);
+            case "GET":
+                return getSettings(indexExpression, parameters);
+            default:
+                throw unsupported(method, Collections.singletonList(indexExpression));
+        }
+    }
+
+    private Response endpoint(String method, String indexExpression, String types, String endpoint,
+                              Map<String, String> parameters, String body) {
+        switch (endpoint) {
+            case "_bulk":
+                return bulk(indexExpression, types, body);
+            case "_mget":
+                return multiGet(indexExpression, types, body);
+            case "_search":
+                return search(resolve(indexExpression, parameters, false), types, parameters, body);
+            case "_count":
+                return count(resolve(indexExpression, parameters, false), types, body);
+            case "_delete_by_query":
+                return deleteByQuery(resolve(indexExpression, parameters, false), types, body);
+            case "_refresh":
+            case "_flush":
+            case "_forcemerge":
+                return new Response(200, shardsResponse(resolve(indexExpression, parameters, false)));
+            case "_settings":
+                if ("GET".equals(method)) {
+                    return getSettings(indexExpression, parameters);
+                }
+                return updateSettings(resolve(indexExpression, parameters, true), body);
+            case "_close":
+            case "_open":
+                for (InMemoryIndex index : resolve(indexExpression, parameters, true)) {
+                    index.setOpen("_open".equals(endpoint));
+                }
+                return acknowledged();
+            default:
+                throw unsupported(method, Arrays.asList(indexExpression, endpoint));
+        }
+    }
+
+    private Response info() {
+        final JsonObject version = new JsonObject();
+        version.addProperty("number", VERSION);
+        version.addProperty("lucene_version", "6.6.0");
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("name", CLUSTER_NAME);
+        response.addProperty("cluster_name", CLUSTER_NAME);
+        response.add("version", version);
+        response.addProperty("tagline", "You Know, for Search");
+        return new Response(200, response);
+    }
+
+    private Response cluster(String method, List<String> path, Map<String, String> parameters) {
+        if (path.size() >= 2 && "GET".equals(method)) {
+            if ("health".equals(path.get(1))) {
+                return health(path.size() > 2 ? path.get(2) : ALL_INDICES);
+            } else if ("state".equals(path.get(1))) {
+                return state();
+            }
+        }
+        throw unsupported(method, path);
+    }
+
+    /**
+     * The cluster health is always {@code green} unless one of the given indices doesn't exist, in which case
+     * Elasticsearch would wait for it until the timeout.
+     */
+    private Response health(String indexExpression) {
+        final List<InMemoryIndex> existingIndices = resolve(indexExpression, Collections.singletonMap("ignore_unavailable", "true"), true);
+        int missingIndices = 0;
+        for (String name : indexExpression.split(",")) {
+            if (!isPattern(name) && !indices.containsKey(name)) {
+                missingIndices++;
+            }
+        }
+
+        int activePrimaryShards = 0;
+        for (InMemoryIndex index : existingIndices) {
+            activePrimaryShards += index.getNumberOfShards();
+        }
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("cluster_name", CLUSTER_NAME);
+        response.addProperty("status", missingIndices == 0 ? "green" : "red");
+        response.addProperty("timed_out", missingIndices > 0);
+        response.addProperty("number_of_nodes", 1);
+        response.addProperty("number_of_data_nodes", 1);
+        response.addProperty("active_primary_shards", activePrimaryShards);
+        response.addProperty("active_shards", activePrimaryShards);
+        response.addProperty("relocating_shards", 0);
+        response.addProperty("initializing_shards", 0);
+        response.addProperty("unassigned_shards", 0);
+        return new Response(missingIndices == 0 ? 200 : 408, response);
+    }
+
+    private Response state() {
+        final JsonObject indicesMetadata = new JsonObject();
+        for (InMemoryIndex index : sorted(indices.values())) {
+            final JsonObject indexMetadata = new JsonObject();
+            indexMetadata.addProperty("state", index.isOpen() ? "open" : "close");
+            indexMetadata.add("settings", index.getNestedSettings());
+            indicesMetadata.add(index.getName(), indexMetadata);
+        }
+
+        final JsonObject templatesMetadata = new JsonObject();
+        for (Map.Entry<String, JsonElement> template : new TreeMap<>(templates).entrySet()) {
+            templatesMetadata.add(template.getKey(), template.getValue());
+        }
+
+        final JsonObject metadata = new JsonObject();
+        metadata.add("templates", templatesMetadata);
+        metadata.add("indices", indicesMetadata);
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("cluster_name", CLUSTER_NAME);
+        response.add("metadata", metadata);
+        return new Response(200, response);
+    }
+
+    private Response template(String method, List<String> path, String body) {
+        if (path.size() != 2) {
+            throw unsupported(method, path);
+        }
+
+        final String name = path.get(1);
+        switch (method) {
+            case "PUT":
+            case "POST":
+                templates.put(name, parseObject(body));
+                return acknowledged();
+            case "DELETE":
+                if (templates.remove(name) == null) {
+                    throw new InMemoryElasticsearchException(404, "index_template_missing_exception", "index_template [" + name + "] missing");
+                }
+                return acknowledged();
+            case "GET":
+            case "HEAD":
+                final JsonElement template = templates.get(name);
+                final JsonObject response = new JsonObject();
+                if (template != null) {
+                    response.add(name, template);
+                }
+                return new Response(template == null ? 404 : 200, "HEAD".equals(method) ? null : response);
+            default:
+                throw unsupported(method, path);
+        }
+    }
+
+    private Response createIndex(String name, String body) {
+        if (!name.equals(name.toLowerCase(Locale.ROOT)) || name.startsWith("_") || isPattern(name) || name.contains(",")) {
+            throw new InMemoryElasticsearchException(400, "invalid_index_name_exception", "Invalid index name [" + name + "]", name);
+        }
+
+        final Map<String, String> settings = templateSettings(name);
+        settings.putAll(indexSettings(parseObject(body)));
+        final InMemoryIndex index = new InMemoryIndex(name, settings);
+        final InMemoryIndex existingIndex = indices.putIfAbsent(name, index);
+        if (existingIndex != null) {
+            throw new InMemoryElasticsearchException(400, "index_already_exists_exception",
+                    "index [" + name + "/" + existingIndex.getUuid() + "] already exists", name);
+        }
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("acknowledged", true);
+        response.addProperty("shards_acknowledged", true);
+        return new Response(200, response);
+    }
+
+    /**
+     * The merged settings of all index templates matching the given index name, in the order of the templates.
+     */
+    private Map<String, String> templateSettings(String name) {
+        final List<JsonObject> matchingTemplates = new ArrayList<>();
+        for (JsonElement template : new TreeMap<>(templates).values()) {
+            final JsonObject templateObject = template.getAsJsonObject();
+            final String pattern = string(templateObject, "template", null);
+            if (pattern != null && wildcardPattern(pattern).matcher(name).matches()) {
+                matchingTemplates.add(templateObject);
+            }
+        }
+        matchingTemplates.sort(Comparator.comparingInt(template -> template.has("order") ? template.get("order").getAsInt() : 0));
+
+        final Map<String, String> settings = new LinkedHashMap<>();
+        for (JsonObject template : matchingTemplates) {
+            final JsonElement templateSettings = template.get("settings");
+            if (templateSettings != null && templateSettings.isJsonObject()) {
+                settings.putAll(InMemoryIndex.flattenSettings(templateSettings.getAsJsonObject()));
+            }
+        }
+        return settings;
+    }
+
+    private static Map<String, String> indexSettings(JsonObject body) {
+        if (body == null) {
+            return Collections.emptyMap();
+        } else if (body.has("settings")) {
+            return InMemoryIndex.flattenSettings(body.getAsJsonObject("settings"));
+        } else if (body.has("mappings") || body.has("aliases")) {
+            return Collections.emptyMap();
+        }
+        return InMemoryIndex.flattenSettings(body);
+    }
+
+    private Response deleteIndices(String indexExpression, Map<String, String> parameters) {
+        for (InMemoryIndex index : resolve(indexExpression, parameters, true)) {
+            indices.remove(index.getName(), index);
+        }
+        return acknowledged();
+    }
+
+    private Response getSettings(String indexExpression, Map<String, String> parameters) {
+        final JsonObject response = new JsonObject();
+        for (InMemoryIndex index : resolve(indexExpression, parameters, true)) {
+            final JsonObject settings = new JsonObject();
+            settings.add("settings", index.getNestedSettings());
+            response.add(index.getName(), settings);
+        }
+        return new Response(200, response);
+    }
+
+    private Response updateSettings(List<InMemoryIndex> targetIndices, String body) {
+        final JsonObject settings = parseObject(body);
+        if (settings == null) {
+            throw badRequest("no settings to update");
+        }
+
+        final Map<String, String> changes = InMemoryIndex.flattenSettings(
+                settings.has("settings") ? settings.getAsJsonObject("settings") : settings);
+        for (InMemoryIndex index : targetIndices) {
+            index.updateSettings(changes);
+        }
+        return acknowledged();
+    }
+
+    private Response bulk(String defaultIndex, String defaultType, String body) {
+        if (body == null) {
+            throw new InMemoryElasticsearchException(400, "action_request_validation_exception", "Validation Failed: 1: no requests added;");
+        }
+
+        final JsonArray items = new JsonArray();
+        boolean errors = false;
+        final String[] lines = body.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].trim().isEmpty()) {
+                continue;
+            }
+
+            final JsonObject action = parseObject(lines[i]);
+            if (action == null || action.entrySet().size() != 1) {
+                throw badRequest("Malformed action/metadata line [" + (i + 1) + "], expected a single action");
+            }
+            final Map.Entry<String, JsonElement> entry = action.entrySet().iterator().next();
+            final String operation = entry.getKey();
+            if (!BULK_OPERATIONS.contains(operation)) {
+                throw badRequest("Malformed action/metadata line [" + (i + 1) + "], expected one of " + BULK_OPERATIONS + " but found [" + operation + "]");
+            }
+
+            final JsonObject metadata = entry.getValue().getAsJsonObject();
+            final String index = string(metadata, "_index", defaultIndex);
+            final String type = string(metadata, "_type", defaultType);
+            final String id = string(metadata, "_id", null);
+
+            JsonElement source = null;
+            if (!"delete".equals(operation)) {
+                if (i + 1 >= lines.length) {
+                    throw badRequest("Malformed action/metadata line [" + (i + 1) + "], expected a source line");
+                }
+                source = parser.parse(lines[++i]);
+            }
+
+            Response response;
+            try {
+                response = writeDocument(operation, index, type, id, source);
+            } catch (InMemoryElasticsearchException e) {
+                final JsonObject failure = new JsonObject();
+                failure.addProperty("_index", index);
+                failure.addProperty("_type", type);
+                failure.addProperty("_id", id);
+                failure.add("error", e.toError());
+                response = new Response(e.getStatus(), failure);
+                errors = true;
+            }
+
+            final JsonObject item = response.getBody().getAsJsonObject();
+            item.addProperty("status", response.getStatus());
+            final JsonObject wrapper = new JsonObject();
+            wrapper.add(operation, item);
+            items.add(wrapper);
+        }
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("took", 0);
+        response.addProperty("errors", errors);
+        response.add("items", items);
+        return new Response(200, response);
+    }
+
+    private Response writeDocument(String operation, String index, String type, String id, JsonElement source) {
+        if (index == null || type == null) {
+            throw new InMemoryElasticsearchException(400, "action_request_validation_exception",
+                    "Validation Failed: 1: " + (index == null ? "index" : "type") + " is missing;");
+        }
+
+        switch (operation) {
+            case "update":
+                final JsonElement partialDocument = source != null && source.isJsonObject() ? source.getAsJsonObject().get("doc") : null;
+                if (partialDocument == null || !partialDocument.isJsonObject()) {
+                    throw badRequest("The in-memory Elasticsearch only supports partial documents in updates");
+                }
+                return updateDocument(index, type, id, partialDocument.getAsJsonObject());
+            case "delete":
+                return deleteDocument(index, type, id);
+            default:
+                return indexDocument(index, type, id, "create".equals(operation), source);
+        }
+    }
+
+    private Response multiGet(String defaultIndex, String defaultType, String body) {
+        final JsonObject request = parseObject(body);
+        if (request == null) {
+            throw new InMemoryElasticsearchException(400, "action_request_validation_exception", "Validation Failed: 1: no documents to get;");
+        }
+
+        final List<JsonObject> requestedDocuments = new ArrayList<>();
+        if (request.has("docs")) {
+            for (JsonElement doc : request.getAsJsonArray("docs")) {
+                requestedDocuments.add(doc.getAsJsonObject());
+            }
+        } else if (request.has("ids")) {
+            for (JsonElement id : request.getAsJsonArray("ids")) {
+                final JsonObject doc = new JsonObject();
+                doc.add("_id", id);
+                requestedDocuments.add(doc);
+            }
+        }
+
+        final JsonArray docs = new JsonArray();
+        for (JsonObject requestedDocument : requestedDocuments) {
+            final String index = string(requestedDocument, "_index", defaultIndex);
+            final String type = string(requestedDocument, "_type", defaultType);
+            final String id = string(requestedDocument, "_id", null);
+            final InMemoryIndex targetIndex = index == null ? null : indices.get(index);
+            final InMemoryIndex.Document document = targetIndex == null || id == null ? null : targetIndex.get(type, id);
+            docs.add(document == null ? missingDocument(index, type, id) : documentResponse(targetIndex, document, true));
+        }
+
+        final JsonObject response = new JsonObject();
+        response.add("docs", docs);
+        return new Response(200, response);
+    }
+
+    private Response document(String method, String indexName, String type, String id, Map<String, String> parameters, String body) {
+        switch (method) {
+            case "PUT":
+            case "POST":
+                return indexDocument(indexName, type, id, "create".equals(parameters.get("op_type")), parseJson(body));
+            case "DELETE":
+                return deleteDocument(indexName, type, id);
+            case "GET":
+            case "HEAD":
+                final InMemoryIndex index = openIndex(indexName);
+                final InMemoryIndex.Document document = index.get(type, id);
+                if (document == null) {
+                    return new Response(404, "HEAD".equals(method) ? null : missingDocument(indexName, type, id));
+                }
+                return new Response(200, "HEAD".equals(method) ? null : documentResponse(index, document, true));
+            default:
+                throw unsupported(method, Arrays.asList(indexName, type, id));
+        }
+    }
+
+    private Response indexDocument(String indexName, String type, String id, boolean create, JsonElement source) {
+        if (source == null || !source.isJsonObject()) {
+            throw new InMemoryElasticsearchException(400, "mapper_parsing_exception", "failed to parse, document is empty", indexName);
+        }
+
+        final InMemoryIndex index = writableIndex(indexName);
+        final String documentId = id == null ? UUID.randomUUID().toString().replace("-", "") : id;
+        final InMemoryIndex.Document document = index.index(type, documentId, source, create);
+
+        final JsonObject response = writeResponse(indexName, document.type, document.id, document.version,
+                document.version == 1L ? "created" : "updated");
+        response.addProperty("created", document.version == 1L);
+        return new Response(document.version == 1L ? 201 : 200, response);
+    }
+
+    private Response updateDocument(String indexName, String type, String id, JsonObject partialDocument) {
+        final InMemoryIndex index = writableIndex(indexName);
+        final InMemoryIndex.Document document = index.update(type, id, partialDocument);
+        return new Response(200, writeResponse(indexName, type, id, document.version, "updated"));
+    }
+
+    private Response deleteDocument(String indexName, String type, String id) {
+        final InMemoryIndex index = indices.get(indexName);
+        final InMemoryIndex.Document document = index == null ? null : index.delete(type, id);
+
+        final JsonObject response = writeResponse(indexName, type, id, document == null ? 1L : document.version + 1L,
+                document == null ? "not_found" : "deleted");
+        response.addProperty("found", document != null);
+        return new Response(document == null ? 404 : 200, response);
+    }
+
+    private Response search(List<InMemoryIndex> targetIndices, String types, Map<String, String> parameters, String body) {
+        final JsonObject request = checkQuery(body);
+        final List<JsonObject> hits = new ArrayList<>();
+        for (InMemoryIndex index : targetIndices) {
+            for (InMemoryIndex.Document document : index.documents(types)) {
+                final JsonObject hit = documentResponse(index, document, false);
+                hit.addProperty("_score", 1.0d);
+                hit.add("_source", document.source);
+                hits.add(hit);
+            }
+        }
+
+        final int from = intParameter(parameters, request, "from", 0);
+        final int size = intParameter(parameters, request, "size", DEFAULT_SEARCH_SIZE);
+        if (parameters.containsKey("scroll")) {
+            // Like Elasticsearch, the scroll is a snapshot of the documents at the time of the initial search
+            final String scrollId = "in-memory-scroll-" + scrollIds.incrementAndGet();
+            final ScrollContext scrollContext = new ScrollContext(hits, size);
+            scrollContexts.put(scrollId, scrollContext);
+            return new Response(200, searchResponse(hits.size(), scrollContext.nextPage(), scrollId, targetIndices));
+        }
+
+        final List<JsonObject> page = hits.subList(Math.min(from, hits.size()), Math.min(from + size, hits.size()));
+        return new Response(200, searchResponse(hits.size(), page, null, targetIndices));
+    }
+
+    private Response scroll(Map<String, String> parameters, String body) {
+        final JsonObject request = parseObject(body);
+        final String scrollId = request == null ? parameters.get("scroll_id") : string(request, "scroll_id", parameters.get("scroll_id"));
+        final ScrollContext scrollContext = scrollId == null ? null : scrollContexts.get(scrollId);
+        if (scrollContext == null) {
+            throw new InMemoryElasticsearchException(404, "search_context_missing_exception", "No search context found for id [" + scrollId + "]");
+        }
+
+        return new Response(200, searchResponse(scrollContext.getTotal(), scrollContext.nextPage(), scrollId, Collections.emptyList()));
+    }
+
+    private Response clearScroll(Map<String, String> parameters, String body) {
+        final List<String> scrollIds = new ArrayList<>();
+        final JsonObject request = parseObject(body);
+        final JsonElement requestedIds = request == null ? null : request.get("scroll_id");
+        if (requestedIds != null && requestedIds.isJsonArray()) {
+            for (JsonElement scrollId : requestedIds.getAsJsonArray()) {
+                scrollIds.add(scrollId.getAsString());
+            }
+        } else if (requestedIds != null) {
+            scrollIds.add(requestedIds.getAsString());
+        } else if (parameters.containsKey("scroll_id")) {
+            scrollIds.addAll(Arrays.asList(parameters.get("scroll_id").split(",")));
+        }
+
+        int freed = 0;
+        if (scrollIds.contains(ALL_INDICES)) {
+            freed = scrollContexts.size();
+            scrollContexts.clear();
+        } else {
+            for (String scrollId : scrollIds) {
+                if (scrollContexts.remove(scrollId) != null) {
+                    freed++;
+                }
+            }
+        }
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("succeeded", true);
+        response.addProperty("num_freed", freed);
+        return new Response(200, response);
+    }
+
+    private Response count(List<InMemoryIndex> targetIndices, String types, String body) {
+        checkQuery(body);
+        long count = 0L;
+        for (InMemoryIndex index : targetIndices) {
+            count += index.documents(types).size();
+        }
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("count", count);
+        response.add("_shards", shards(targetIndices));
+        return new Response(200, response);
+    }
+
+    private Response deleteByQuery(List<InMemoryIndex> targetIndices, String types, String body) {
+        checkQuery(body);
+        long deleted = 0L;
+        for (InMemoryIndex index : targetIndices) {
+            deleted += index.deleteAll(types);
+        }
+
+        final JsonObject response = new JsonObject();
+        response.addProperty("took", 0);
+        response.addProperty("timed_out", false);
+        response.addProperty("total", deleted);
+        response.addProperty("deleted", deleted);
+        response.addProperty("batches", 1);
+        response.addProperty("version_conflicts", 0);
+        response.addProperty("noops", 0);
+        response.add("failures", new JsonArray());
+        return new Response(200, response);
+    }
+
+    /**
+     * Resolve an index expression like {@code _all}, {@code logs-*} or {@code index1,index2} to the matching indices.
+     *
+     * @param indexExpression The comma separated index names and wildcard patterns
+     * @param parameters      The request parameters, e.g. {@code ignore_unavailable}
+     * @param includeClosed   Whether closed indices can be resolved
+     * @return The matching indices, sorted by their names
+     * @throws InMemoryElasticsearchException if a concrete index doesn't exist or is closed
+     */
+    private List<InMemoryIndex> resolve(String indexExpression, Map<String, String> parameters, boolean includeClosed) {
+        final boolean ignoreUnavailable = Boolean.parseBoolean(parameters.get("ignore_unavailable"));
+        final Map<String, InMemoryIndex> resolvedIndices = new TreeMap<>();
+        for (String name : indexExpression.split(",")) {
+            if (isPattern(name)) {
+                final Pattern pattern = wildcardPattern(name);
+                for (InMemoryIndex index : indices.values()) {
+                    if ((includeClosed || index.isOpen()) && pattern.matcher(index.getName()).matches()) {
+                        resolvedIndices.put(index.getName(), index);
+                    }
+                }
+            } else {
+                final InMemoryIndex index = indices.get(name);
+                if (index == null) {
+                    if (!ignoreUnavailable) {
+                        throw indexNotFound(name);
+                    }
+                } else if (!includeClosed && !index.isOpen()) {
+                    if (!ignoreUnavailable) {
+                        throw new InMemoryElasticsearchException(400, "index_closed_exception", "closed", name);
+                    }
+                } else {
+                    resolvedIndices.put(name, index);
+                }
+            }
+        }
+        return new ArrayList<>(resolvedIndices.values());
+    }
+
+    private InMemoryIndex openIndex(String name) {
+        final InMemoryIndex index = indices.get(name);
+        if (index == null) {
+            throw indexNotFound(name);
+        } else if (!index.isOpen()) {
+            throw new InMemoryElasticsearchException(400, "index_closed_exception", "closed", name);
+        }
+        return index;
+    }
+
+    /**
+     * The index with the given name, which is created with the default settings if necessary.
+     */
+    private InMemoryIndex writableIndex(String name) {
+        final InMemoryIndex index = indices.get(name);
+        if (index == null) {
+            try {
+                createIndex(name, null);
+            } catch (InMemoryElasticsearchException e) {
+                if (e.getStatus() != 400 || !indices.containsKey(name)) {
+                    throw e;
+                }
+            }
+        }
+        return openIndex(name);
+    }
+
+    private JsonObject checkQuery(String body) {
+        final JsonObject request = parseObject(body);
+        final JsonElement query = request == null ? null : request.get("query");
+        if (query != null && !(query.isJsonObject()
+                && query.getAsJsonObject().entrySet().size() == 1
+                && query.getAsJsonObject().has("match_all"))) {
+            throw badRequest("The in-memory Elasticsearch only supports match_all queries, but got " + query);
+        }
+        return request;
+    }
+
+    private JsonElement parseJson(String body) {
+        return body == null ? null : parser.parse(body);
+    }
+
+    private JsonObject parseObject(String body) {
+        final JsonElement json = parseJson(body);
+        return json == null || json.isJsonNull() ? null : json.getAsJsonObject();
+    }
+
+    private static String string(JsonObject object, String member, String defaultValue) {
+        final JsonElement value = object.get(member);
+        return value == null || value.isJsonNull() ? defaultValue : value.getAsString();
+    }
+
+    private static int intParameter(Map<String, String> parameters, JsonObject request, String name, int defaultValue) {
+        if (parameters.containsKey(name)) {
+            return Integer.parseInt(parameters.get(name));
+        } else if (request != null && request.has(name)) {
+            return request.get(name).getAsInt();
+        }
+        return defaultValue;
+    }
+
+    private static boolean isPattern(String indexExpression) {
+        return ALL_INDICES.equals(indexExpression) || indexExpression.contains("*");
+    }
+
+    private static Pattern wildcardPattern(String indexExpression) {
+        if (ALL_INDICES.equals(indexExpression)) {
+            return Pattern.compile(".*");
+        }
+
+        final StringBuilder regex = new StringBuilder();
+        for (String part : indexExpression.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static List<InMemoryIndex> sorted(Iterable<InMemoryIndex> unsortedIndices) {
+        final Map<String, InMemoryIndex> sortedIndices = new TreeMap<>();
+        for (InMemoryIndex index : unsortedIndices) {
+            sortedIndices.put(index.getName(), index);
+        }
+        return new ArrayList<>(sortedIndices.values());
+    }
+
+    private static JsonObject documentResponse(InMemoryIndex index, InMemoryIndex.Document document, boolean withSource) {
+        final JsonObject response = new JsonObject();
+        response.addProperty("_index", index.getName());
+        response.addProperty("_type", document.type);
+        response.addProperty("_id", document.id);
+        if (withSource) {
+            response.addProperty("_version", document.version);
+            response.addProperty("found", true);
+            response.add("_source", document.source);
+        }
+        return response;
+    }
+
+    private static JsonObject missingDocument(String index, String type, String id) {
+        final JsonObject response = new JsonObject();
+        response.addProperty("_index", index);
+        response.addProperty("_type", type);
+        response.addProperty("_id", id);
+        response.addProperty("found", false);
+        return response;
+    }
+
+    private static JsonObject writeResponse(String index, String type, String id, long version, String result) {
+        final JsonObject response = new JsonObject();
+        response.addProperty("_index", index);
+        response.addProperty("_type", type);
+        response.addProperty("_id", id);
+        response.addProperty("_version", version);
+        response.addProperty("result", result);
+        response.add("_shards", shards(1));
+        return response;
+    }
+
+    private static JsonObject searchResponse(long total, List<JsonObject> page, String scrollId, List<InMemoryIndex> targetIndices) {
+        final JsonArray hits = new JsonArray();
+        for (JsonObject hit : page) {
+            hits.add(hit);
+        }
+
+        final JsonObject hitsObject = new JsonObject();
+        hitsObject.addProperty("total", total);
+        hitsObject.addProperty("max_score", total == 0L ? null : 1.0d);
+        hitsObject.add("hits", hits);
+
+        final JsonObject response = new JsonObject();
+        if (scrollId != null) {
+            response.addProperty("_scroll_id", scrollId);
+        }
+        response.addProperty("took", 0);
+        response.addProperty("timed_out", false);
+        response.add("_shards", shards(targetIndices));
+        response.add("hits", hitsObject);
+        return response;
+    }
+
+    private static JsonObject shardsResponse(List<InMemoryIndex> targetIndices) {
+        final JsonObject response = new JsonObject();
+        response.add("_shards", shards(targetIndices));
+        return response;
+    }
+
+    private static JsonObject shards(List<InMemoryIndex> targetIndices) {
+        int shards = 0;
+        for (InMemoryIndex index : targetIndices) {
+            shards += index.getNumberOfShards();
+        }
+        return shards(shards);
+    }
+
+    private static JsonObject shards(int total) {
+        final JsonObject shards = new JsonObject();
+        shards.addProperty("total", total);
+        shards.addProperty("successful", total);
+        shards.addProperty("failed", 0);
+        return shards;
+    }
+
+    private static Response acknowledged() {
+        final JsonObject response = new JsonObject();
+        response.addProperty("acknowledged", true);
+        return new Response(200, response);
+    }
+
+    private static InMemoryElasticsearchException unsupported(String method, List<String> path) {
+        return badRequest("The in-memory Elasticsearch doesn't support " + method + " /" + String.join("/", path));
+    }
+
+    /**
+     * The remaining hits of a scroll.
+     */
+    private static final class ScrollContext {
+        private final List<JsonObject> hits;
+        private final int size;
+        private int position = 0;
+
+        ScrollContext(List<JsonObject> hits, int size) {
+            this.hits = hits;
+            this.size = size;
+        }
+
+        long getTotal() {
+            return hits.size();
+        }
+
+        synchronized List<JsonObject> nextPage() {
+            final int from = position;
+            position = Math.min(position + size, hits.size());
+            return hits.subList(from, position);
+        }
+    }
+
+    /**
+     * The status and the JSON body of a response.
+     */
+    static final class Response {
+        private final int status;
+        private final JsonElement body;
+
+        Response(int status, JsonElement body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        /**
+         * The body of the response, {@literal null} for responses without a body.
+         */
+        JsonElement getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.inmemory;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The documents and settings of a single index of the {@link InMemoryEngine}.
+ * <p>
+ * The documents are stored in a concurrent map ordered by their ID and type, every change is visible immediately.
+ */
+class InMemoryIndex {
+    static final String ALL_TYPES = "_all";
+
+    private static final String INDEX_SETTINGS_PREFIX = "index.";
+    private static final String NUMBER_OF_SHARDS_SETTING = "index.number_of_shards";
+    private static final String DEFAULT_NUMBER_OF_SHARDS = "5";
+    private static final String NUMBER_OF_REPLICAS_SETTING = "index.number_of_replicas";
+    private static final String DEFAULT_NUMBER_OF_REPLICAS = "1";
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final String name;
+    private final String uuid = UUID.randomUUID().toString().replace("-", "");
+    private final Map<String, String> settings = new TreeMap<>();
+    private final ConcurrentNavigableMap<String, Document> documents = new ConcurrentSkipListMap<>();
+    private volatile boolean open = true;
+
+    InMemoryIndex(String name, Map<String, String> settings) {
+        this.name = name;
+        this.settings.put(NUMBER_OF_SHARDS_SETTING, DEFAULT_NUMBER_OF_SHARDS);
+        this.settings.put(NUMBER_OF_REPLICAS_SETTING, DEFAULT_NUMBER_OF_REPLICAS);
+        this.settings.put("index.provided_name", name);
+        this.settings.put("index.uuid", uuid);
+        this.settings.put("index.creation_date", String.valueOf(System.currentTimeMillis()));
+        updateSettings(settings);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getUuid() {
+        return uuid;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    void setOpen(boolean open) {
+        this.open = open;
+    }
+
+    int getNumberOfShards() {
+        synchronized (settings) {
+            return Integer.parseInt(settings.getOrDefault(NUMBER_OF_SHARDS_SETTING, DEFAULT_NUMBER_OF_SHARDS));
+        }
+    }
+
+    /**
+     * Index the given document, replacing an existing document with the same type and ID.
+     *
+     * @param create Fail if a document with the same type and ID exists
+     * @return The new version of the document
+     * @throws InMemoryElasticsearchException if {@code create} is set and the document exists
+     */
+    Document index(String type, String id, JsonElement source, boolean create) {
+        return documents.compute(key(type, id), (key, previous) -> {
+            if (previous == null) {
+                return new Document(type, id, 1L, source);
+            } else if (create) {
+                throw new InMemoryElasticsearchException(409, "version_conflict_engine_exception",
+                        "[" + type + "][" + id + "]: version conflict, document already exists (current version [" + previous.version + "])",
+                        name);
+            }
+            return new Document(type, id, previous.version + 1L, source);
+        });
+    }
+
+    /**
+     * Merge the given partial document into the top-level fields of an existing document.
+     *
+     * @return The new version of the document
+     * @throws InMemoryElasticsearchException if the document doesn't exist
+     */
+    Document update(String type, String id, JsonObject partialDocument) {
+        return documents.compute(key(type, id), (key, previous) -> {
+            if (previous == null) {
+                throw new InMemoryElasticsearchException(404, "document_missing_exception",
+                        "[" + type + "][" + id + "]: document missing", name);
+            }
+
+            final JsonObject source = new JsonObject();
+            for (Map.Entry<String, JsonElement> field : previous.source.getAsJsonObject().entrySet()) {
+                source.add(field.getKey(), field.getValue());
+            }
+            for (Map.Entry<String, JsonElement> field : partialDocument.entrySet()) {
+                source.add(field.getKey(), field.getValue());
+            }
+            return new Document(type, id, previous.version + 1L, source);
+        });
+    }
+
+    /**
+     * Delete the document with the given type and ID.
+     *
+     * @return The deleted document or {@literal null} if it didn't exist
+     */
+    Document delete(String type, String id) {
+        return documents.remove(key(type, id));
+    }
+
+    /**
+     * Get the document with the given ID.
+     *
+     * @param types The types of the document, {@value #ALL_TYPES} or {@literal null} for any type
+     * @return The document or {@literal null} if it doesn't exist
+     */
+    Document get(String types, String id) {
+        for (Document document : documents.subMap(id + KEY_SEPARATOR, id + (char) (KEY_SEPARATOR + 1)).values()) {
+            if (matchesType(types, document.type)) {
+                return document;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * All documents of the given types.
+     *
+     * @param types The types of the documents, {@value #ALL_TYPES} or {@literal null} for all types
+     */
+    List<Document> documents(String types) {
+        final List<Document> result = new ArrayList<>();
+        for (Document document : documents.values()) {
+            if (matchesType(types, document.type)) {
+                result.add(document);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Delete all documents of the given types.
+     *
+     * @param types The types of the documents, {@value #ALL_TYPES} or {@literal null} for all types
+     * @return The number of deleted documents
+     */
+    int deleteAll(String types) {
+        int deleted = 0;
+        for (Document document : documents(types)) {
+            if (documents.remove(key(document.type, document.id), document)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * The settings of this index with fully qualified keys, e.g. {@code index.number_of_shards}.
+     */
+    Map<String, String> getSettings() {
+        synchronized (settings) {
+            return new TreeMap<>(settings);
+        }
+    }
+
+    /**
+     * Update the settings of this index, settings with a {@literal null} value are reset to their defaults.
+     *
+     * @param changes The changed settings with fully qualified keys
+     */
+    void updateSettings(Map<String, String> changes) {
+        synchronized (settings) {
+            for (Map.Entry<String, String> setting : changes.entrySet()) {
+                if (setting.getValue() == null) {
+                    // Like Elasticsearch, the number of shards and replicas are always part of the index settings
+                    if (NUMBER_OF_SHARDS_SETTING.equals(setting.getKey())) {
+                        settings.put(NUMBER_OF_SHARDS_SETTING, DEFAULT_NUMBER_OF_SHARDS);
+                    } else if (NUMBER_OF_REPLICAS_SETTING.equals(setting.getKey())) {
+                        settings.put(NUMBER_OF_REPLICAS_SETTING, DEFAULT_NUMBER_OF_REPLICAS);
+                    } else {
+                        settings.remove(setting.getKey());
+                    }
+                } else {
+                    settings.put(setting.getKey(), setting.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * The settings of this index in the nested format of the Get Settings API.
+     */
+    JsonObject getNestedSettings() {
+        final JsonObject nestedSettings = new JsonObject();
+        for (Map.Entry<String, String> setting : getSettings().entrySet()) {
+            final String[] path = setting.getKey().split("\\.");
+            JsonObject parent = nestedSettings;
+            for (int i = 0; i < path.length - 1; i++) {
+                final JsonElement child = parent.get(path[i]);
+                if (child == null || !child.isJsonObject()) {
+                    final JsonObject object = new JsonObject();
+                    parent.add(path[i], object);
+                    parent = object;
+                } else {
+                    parent = child.getAsJsonObject();
+                }
+            }
+            parent.addProperty(path[path.length - 1], setting.getValue());
+        }
+        return nestedSettings;
+    }
+
+    /**
+     * Flatten nested or partially flattened settings into fully qualified keys, e.g. {@code {"index":{"refresh_interval":"1s"}}}
+     * or {@code {"refresh_interval":"1s"}} into {@code index.refresh_interval=1s}.
+     *
+     * @param settings The settings to flatten, {@literal null} values are kept
+     * @return The flattened settings
+     */
+    static Map<String, String> flattenSettings(JsonObject settings) {
+        final Map<String, String> flattenedSettings = new LinkedHashMap<>();
+        flattenSettings("", settings, flattenedSettings);
+        return flattenedSettings;
+    }
+
+    private static void flattenSettings(String prefix, JsonObject settings, Map<String, String> flattenedSettings) {
+        for (Map.Entry<String, JsonElement> setting : settings.entrySet()) {
+            final String key = prefix + setting.getKey();
+            final JsonElement value = setting.getValue();
+            if (value.isJsonObject()) {
+                flattenSettings(key + ".", value.getAsJsonObject(), flattenedSettings);
+            } else {
+                final String qualifiedKey = key.startsWith(INDEX_SETTINGS_PREFIX) ? key : INDEX_SETTINGS_PREFIX + key;
+                final String flattenedValue;
+                if (value.isJsonNull()) {
+                    flattenedValue = null;
+                } else if (value.isJsonPrimitive()) {
+                    flattenedValue = value.getAsString();
+                } else {
+                    flattenedValue = value.toString();
+                }
+                flattenedSettings.put(qualifiedKey, flattenedValue);
+            }
+        }
+    }
+
+    private static boolean matchesType(String types, String type) {
+        if (types == null || ALL_TYPES.equals(types)) {
+            return true;
+        }
+        for (String candidate : types.split(",")) {
+            if (candidate.equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String key(String type, String id) {
+        return id + KEY_SEPARATOR + type;
+    }
+
+    /**
+     * An immutable version of a stored document.
+     */
+    static final class Document {
+        final String type;
+        final String id;
+        final long version;
+        final JsonElement source;
+
+        Document(String type, String id, long version, JsonElement source) {
+            this.type = type;
+            this.id = id;
+            this.version = version;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes index actions in the newline delimited JSON format of the Bulk API and hands the request bodies
+ * to a {@link BodyConsumer} once the configured number of actions or the configured body size has been reached.
+ * The body size is the length of the UTF-8 encoded request body in bytes.
+ *
+ * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/docs-bulk.html">Elasticsearch Reference » Document APIs » Bulk API</a>
+ */
+class BulkBodyWriter {
+    private final int bulkActions;
+    private final long bulkSize;
+    private final BodyConsumer consumer;
+
+    private StringBuilder body = new StringBuilder();
+    private long bodyBytes = 0L;
+    private long[] lines = new long[16];
+    private int pendingActions = 0;
+
+    BulkBodyWriter(int bulkActions, long bulkSize, BodyConsumer consumer) {
+        this.bulkActions = bulkActions;
+        this.bulkSize = bulkSize;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Add an index action for the given document source.
+     *
+     * @param index  The name of the index
+     * @param type   The type of the document, may be {@literal null}
+     * @param id     The ID of the document, may be {@literal null}
+     * @param source The document source as JSON
+     */
+    void index(String index, String type, String id, String source) throws IOException {
+        final JsonObject metadata = new JsonObject();
+        metadata.addProperty("_index", index);
+        if (type != null) {
+            metadata.addProperty("_type", type);
+        }
+        if (id != null) {
+            metadata.addProperty("_id", id);
+        }
+
+        final JsonObject action = new JsonObject();
+        action.add("index", metadata);
+
+        add(action.toString(), source);
+    }
+
+    /**
+     * Add an action with the given metadata line and an optional source line.
+     * Both lines must not contain line breaks.
+     *
+     * @param metadata The action and metadata line
+     * @param source   The source line or {@literal null} for actions without source
+     */
+    void add(String metadata, String source) throws IOException {
+        add(metadata, source, 0L);
+    }
+
+    /**
+     * Add an action with the given metadata line and an optional source line, which has been read
+     * from the given line of a dataset. Both lines must not contain line breaks.
+     *
+     * @param metadata The action and metadata line
+     * @param source   The source line or {@literal null} for actions without source
+     * @param line     The line number of the action in the dataset or {@literal 0} if unknown
+     */
+    void add(String metadata, String source, long line) throws IOException {
+        body.append(metadata).append('\n');
+        bodyBytes += utf8Length(metadata) + 1L;
+        if (source != null) {
+            body.append(source).append('\n');
+            bodyBytes += utf8Length(source) + 1L;
+        }
+
+        if (pendingActions == lines.length) {
+            lines = Arrays.copyOf(lines, lines.length * 2);
+        }
+        lines[pendingActions++] = line;
+
+        if ((bulkActions > 0 && pendingActions >= bulkActions) || (bulkSize > 0 && bodyBytes >= bulkSize)) {
+            flush();
+        }
+    }
+
+    /**
+     * Hand the pending actions to the {@link BodyConsumer}.
+     */
+    void flush() throws IOException {
+        if (pendingActions == 0) {
+            return;
+        }
+
+        final String request = body.toString();
+        final long[] requestLines = Arrays.copyOf(lines, pendingActions);
+        body = new StringBuilder(request.length());
+        bodyBytes = 0L;
+        pendingActions = 0;
+
+        consumer.accept(request, requestLines);
+    }
+
+    /**
+     * The length of the given string in UTF-8 without encoding it. Unpaired surrogates count as two bytes.
+     */
+    private static long utf8Length(String value) {
+        long length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x800) {
+                // A surrogate pair is four bytes, i.e. two more than its two chars
+                length += Character.isSurrogate(c) ? 1L : 2L;
+            } else if (c >= 0x80) {
+                length += 1L;
+            }
+        }
+        return length;
+    }
+
+    @FunctionalInterface
+    interface BodyConsumer {
+        /**
+         * @param body  The bulk request body
+         * @param lines The dataset line numbers of the actions in the request body, {@literal 0} if unknown
+         */
+        void accept(String body, long[] lines) throws IOException;
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Streams datasets in the newline delimited JSON format of the Bulk API line by line.
+ * <p>
+ * Every action consists of an action and metadata line followed by a source line, except for
+ * {@code delete} actions which don't have a source line. Empty lines are ignored.
+ *
+ * @see <a href="https://www.elastic.co/guide/en/elasticsearch/reference/5.5/docs-bulk.html">Elasticsearch Reference » Document APIs » Bulk API</a>
+ */
+class BulkDatasetReader {
+    private static final Set<String> ACTIONS = ImmutableSet.of("index", "create", "update", "delete");
+    private static final String DELETE_ACTION = "delete";
+    private static final int MAX_DETECTION_LENGTH = 64 * 1024;
+
+    private final JsonParser jsonParser = new JsonParser();
+    private final UnaryOperator<String> indexNameMapper;
+
+    /**
+     * @param indexNameMapper Maps the index names of the dataset to the index names used for indexing,
+     *                        action and metadata lines are only rewritten if the index name has changed
+     */
+    BulkDatasetReader(UnaryOperator<String> indexNameMapper) {
+        this.indexNameMapper = indexNameMapper;
+    }
+
+    /**
+     * Check whether the dataset is in the newline delimited JSON format of the Bulk API by looking at its first
+     * non-blank line, which has to be a valid action and metadata line.
+     * <p>
+     * The given {@link InputStream} must support {@link InputStream#mark(int)}, it's reset after reading the first line.
+     *
+     * @param data The dataset to check
+     */
+    static boolean isBulkFormat(InputStream data) throws IOException {
+        final ByteArrayOutputStream firstLine = new ByteArrayOutputStream();
+
+        data.mark(MAX_DETECTION_LENGTH);
+        try {
+            int length = 0;
+            int b = data.read();
+            // Leading blank lines are ignored when reading the dataset as well
+            while (b != -1 && Character.isWhitespace(b)) {
+                if (++length >= MAX_DETECTION_LENGTH) {
+                    return false;
+                }
+                b = data.read();
+            }
+            while (b != -1 && b != '\n') {
+                if (++length >= MAX_DETECTION_LENGTH) {
+                    return false;
+                }
+                firstLine.write(b);
+                b = data.read();
+            }
+        } finally {
+            data.reset();
+        }
+
+        try {
+            final JsonElement element = new JsonParser().parse(new String(firstLine.toByteArray(), StandardCharsets.UTF_8));
+            return element.isJsonObject() && actionOf(element.getAsJsonObject()) != null;
+        } catch (JsonParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stream the actions of the given dataset one by one to the given {@link BulkActionConsumer}.
+     *
+     * @param data     The dataset to read
+     * @param consumer The consumer receiving every action of the dataset in order
+     */
+    void read(InputStream data, BulkActionConsumer consumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(data, StandardCharsets.UTF_8))) {
+            long lineNumber = 0L;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                final long actionLineNumber = lineNumber;
+                final JsonObject metadata = parseAction(line, actionLineNumber);
+                final Map.Entry<String, JsonElement> action = actionOf(metadata);
+                final JsonObject actionMetadata = action.getValue().getAsJsonObject();
+                final JsonElement index = actionMetadata.get("_index");
+                if (index == null || !index.isJsonPrimitive()) {
+                    throw new IllegalArgumentException("Missing index name in line " + actionLineNumber + ": " + line);
+                }
+
+                final String indexName = indexNameMapper.apply(index.getAsString());
+                final String metadataLine;
+                if (indexName.equals(index.getAsString())) {
+                    metadataLine = line;
+                } else {
+                    actionMetadata.addProperty("_index", indexName);
+                    metadataLine = metadata.toString();
+                }
+
+                String source = null;
+                if (!DELETE_ACTION.equals(action.getKey())) {
+                    do {
+                        source = reader.readLine();
+                        lineNumber++;
+                    } while (source != null && source.trim().isEmpty());
+
+                    if (source == null) {
+                        throw new IllegalArgumentException("Missing source for action in line " + actionLineNumber + ": " + line);
+                    }
+                }
+
+                consumer.accept(indexName, metadataLine, source, actionLineNumber);
+            }
+        }
+    }
+
+    private JsonObject parseAction(String line, long lineNumber) {
+        try {
+            final JsonElement element = jsonParser.parse(line);
+            if (!element.isJsonObject() || actionOf(element.getAsJsonObject()) == null) {
+                throw new IllegalArgumentException("Invalid action in line " + lineNumber + ": " + line);
+            }
+            return element.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Invalid action in line " + lineNumber + ": " + line, e);
+        }
+    }
+
+    private static Map.Entry<String, JsonElement> actionOf(JsonObject metadata) {
+        if (metadata.size() != 1) {
+            return null;
+        }
+
+        final Map.Entry<String, JsonElement> action = metadata.entrySet().iterator().next();
+        return ACTIONS.contains(action.getKey()) && action.getValue().isJsonObject() ? action : null;
+    }
+
+    @FunctionalInterface
+    interface BulkActionConsumer {
+        /**
+         * @param index    The name of the index of the action
+         * @param metadata The action and metadata line
+         * @param source   The source line or {@literal null} for actions without source
+         * @param line     The line number of the action and metadata line
+         */
+        void accept(String index, String metadata, String source, long line) throws IOException;
+    }
+}
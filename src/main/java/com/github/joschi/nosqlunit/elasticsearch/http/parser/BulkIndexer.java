@@ -0,0 +1,279 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchMetricsListener;
+import com.google.common.base.MoreObjects;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.params.Parameters;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sends index actions to Elasticsearch in {@link Bulk} requests once the configured number of actions
+ * or the configured request size has been reached.
+ * <p>
+ * If more than zero concurrent requests are allowed, bulk requests are executed asynchronously and
+ * {@link #flush()} blocks only if the maximum number of requests is already in flight. Failures of
+ * asynchronous requests are collected and reported by {@link #finish()}.
+ * <p>
+ * If requested, the last bulk request is held back and sent with {@code refresh=wait_for} by {@link #finish()}
+ * once all other requests have completed.
+ * <p>
+ * Every completed bulk request is reported to the {@link ElasticsearchMetricsListener}.
+ */
+class BulkIndexer {
+    private static final String WAIT_FOR_REFRESH = "wait_for";
+
+    private final JestClient client;
+    private final int maxConcurrentRequests;
+    private final Semaphore inFlightRequests;
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+    private final BulkBodyWriter bodyWriter;
+    private final boolean waitForRefresh;
+    private final Runnable beforeRequest;
+    private final ElasticsearchMetricsListener metricsListener;
+    private String lastBody = null;
+    private long[] lastLines = null;
+
+    BulkIndexer(JestClient client, int bulkActions, long bulkSize, int maxConcurrentRequests) {
+        this(client, bulkActions, bulkSize, maxConcurrentRequests, false, () -> {
+        }, ElasticsearchMetricsListener.NONE);
+    }
+
+    /**
+     * @param waitForRefresh  Whether to send the last bulk request with {@code refresh=wait_for}
+     * @param beforeRequest   Called before every bulk request is sent, e. g. to wait for the creation of indices
+     * @param metricsListener The listener receiving the metrics of every completed bulk request
+     */
+    BulkIndexer(JestClient client, int bulkActions, long bulkSize, int maxConcurrentRequests, boolean waitForRefresh,
+                Runnable beforeRequest, ElasticsearchMetricsListener metricsListener) {
+        this.client = client;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.waitForRefresh = waitForRefresh;
+        this.beforeRequest = beforeRequest;
+        this.metricsListener = metricsListener;
+        this.inFlightRequests = new Semaphore(Math.max(maxConcurrentRequests, 0));
+        this.bodyWriter = new BulkBodyWriter(bulkActions, bulkSize, this::send);
+    }
+
+    /**
+     * Add an index action to the current bulk request and flush it if one of the thresholds has been reached.
+     *
+     * @param index  The name of the index
+     * @param type   The type of the document, may be {@literal null}
+     * @param id     The ID of the document, may be {@literal null}
+     * @param source The document source as JSON
+     */
+    void index(String index, String type, String id, String source) throws IOException {
+        bodyWriter.index(index, type, id, source);
+    }
+
+    /**
+     * Add an action with the given metadata and source lines to the current bulk request
+     * and flush it if one of the thresholds has been reached.
+     *
+     * @param metadata The action and metadata line
+     * @param source   The source line or {@literal null} for actions without source
+     * @param line     The line number of the action in the dataset
+     */
+    void add(String metadata, String source, long line) throws IOException {
+        bodyWriter.add(metadata, source, line);
+    }
+
+    /**
+     * Send a complete, pre-built bulk request body after all pending index actions.
+     *
+     * @param body  The bulk request body in the newline delimited JSON format
+     * @param lines The dataset line numbers of the actions in the request body, {@literal 0} if unknown
+     */
+    void addBody(String body, long[] lines) throws IOException {
+        bodyWriter.flush();
+        send(body, lines);
+    }
+
+    /**
+     * Send all pending index actions to Elasticsearch.
+     */
+    void flush() throws IOException {
+        bodyWriter.flush();
+    }
+
+    private void send(String body, long[] lines) throws IOException {
+        if (waitForRefresh) {
+            // Hold back the latest request body until it's either followed by another one or sent by finish()
+            final String previousBody = lastBody;
+            final long[] previousLines = lastLines;
+            lastBody = body;
+            lastLines = lines;
+            if (previousBody != null) {
+                execute(new RawBulk(previousBody), previousLines);
+            }
+        } else {
+            execute(new RawBulk(body), lines);
+        }
+    }
+
+    private void execute(RawBulk bulk, long[] lines) throws IOException {
+        beforeRequest.run();
+
+        if (maxConcurrentRequests <= 0) {
+            executeSynchronously(bulk, lines);
+        } else {
+            // Stop sending requests as soon as one of the previous requests has failed
+            if (!failures.isEmpty()) {
+                finish();
+            }
+
+            inFlightRequests.acquireUninterruptibly();
+            client.executeAsync(bulk, new JestResultHandler<BulkResult>() {
+                @Override
+                public void completed(BulkResult result) {
+                    try {
+                        bulkRequestCompleted(bulk, lines, result);
+                        if (!result.isSucceeded()) {
+                            failures.add(errorMessage(result, lines));
+                        }
+                    } catch (RuntimeException e) {
+                        // JestClient would call failed() for exceptions thrown here and release the permit twice
+                        failures.add("Error while bulk indexing documents: " + e.getMessage());
+                    } finally {
+                        inFlightRequests.release();
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    try {
+                        metricsListener.bulkRequestCompleted(lines.length, bulk.getBodySize(), lines.length);
+                        failures.add("Error while bulk indexing documents: " + e.getMessage());
+                    } finally {
+                        inFlightRequests.release();
+                    }
+                }
+            });
+        }
+    }
+
+    private void executeSynchronously(RawBulk bulk, long[] lines) throws IOException {
+        final BulkResult result;
+        try {
+            result = client.execute(bulk);
+        } catch (IOException | RuntimeException e) {
+            metricsListener.bulkRequestCompleted(lines.length, bulk.getBodySize(), lines.length);
+            throw e;
+        }
+        bulkRequestCompleted(bulk, lines, result);
+        if (!result.isSucceeded()) {
+            throw new IllegalStateException(errorMessage(result, lines));
+        }
+    }
+
+    /**
+     * Send all pending index actions to Elasticsearch, wait for all requests in flight to complete
+     * and report their failures.
+     */
+    void finish() throws IOException {
+        flush();
+        awaitCompletion();
+
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(String.join("\n", failures));
+        }
+
+        if (lastBody != null) {
+            final RawBulk bulk = new RawBulk(lastBody, new Bulk.Builder().setParameter(Parameters.REFRESH, WAIT_FOR_REFRESH));
+            final long[] lines = lastLines;
+            lastBody = null;
+            lastLines = null;
+            beforeRequest.run();
+            executeSynchronously(bulk, lines);
+        }
+    }
+
+    /**
+     * Wait for all asynchronous bulk requests in flight to complete.
+     */
+    void awaitCompletion() {
+        if (maxConcurrentRequests > 0) {
+            inFlightRequests.acquireUninterruptibly(maxConcurrentRequests);
+            inFlightRequests.release(maxConcurrentRequests);
+        }
+    }
+
+    private void bulkRequestCompleted(RawBulk bulk, long[] lines, BulkResult result) {
+        final int failedActions;
+        if (result.isSucceeded()) {
+            failedActions = 0;
+        } else {
+            // Requests failing as a whole don't have any items
+            final int failedItems = result.getFailedItems().size();
+            failedActions = failedItems > 0 ? failedItems : lines.length;
+        }
+        metricsListener.bulkRequestCompleted(lines.length, bulk.getBodySize(), failedActions);
+    }
+
+    static String errorMessage(BulkResult result, long[] lines) {
+        final StringBuilder sb = new StringBuilder("Error while bulk indexing documents: ")
+                .append(result.getErrorMessage());
+
+        final List<BulkResult.BulkResultItem> failedItems = result.getFailedItems();
+        if (!failedItems.isEmpty()) {
+            final List<Long> failedLines = failedLines(result, lines);
+            sb.append('\n');
+            for (int i = 0; i < failedItems.size(); i++) {
+                final BulkResult.BulkResultItem bulkResultItem = failedItems.get(i);
+                final Long line = failedLines.size() == failedItems.size() && failedLines.get(i) > 0L ? failedLines.get(i) : null;
+                final String s = MoreObjects.toStringHelper(BulkResult.BulkResultItem.class)
+                        .omitNullValues()
+                        .add("line", line)
+                        .add("operation", bulkResultItem.operation)
+                        .add("index", bulkResultItem.index)
+                        .add("type", bulkResultItem.type)
+                        .add("id", bulkResultItem.id)
+                        .add("status", bulkResultItem.status)
+                        .add("error", bulkResultItem.error)
+                        .add("errorType", bulkResultItem.errorType)
+                        .add("errorReason", bulkResultItem.errorReason)
+                        .add("version", bulkResultItem.version)
+                        .toString();
+                sb.append('\n').append(s);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Map the failed items of the bulk response to the dataset line numbers of their actions.
+     */
+    private static List<Long> failedLines(BulkResult result, long[] lines) {
+        final List<Long> failedLines = new ArrayList<>();
+        final JsonObject jsonObject = result.getJsonObject();
+        if (lines == null || jsonObject == null || !jsonObject.has("items")) {
+            return failedLines;
+        }
+
+        final JsonArray items = jsonObject.getAsJsonArray("items");
+        for (int i = 0; i < items.size() && i < lines.length; i++) {
+            for (Map.Entry<String, JsonElement> item : items.get(i).getAsJsonObject().entrySet()) {
+                final JsonElement error = item.getValue().getAsJsonObject().get("error");
+                if (error != null && !error.isJsonNull()) {
+                    failedLines.add(lines[i]);
+                }
+            }
+        }
+
+        return failedLines;
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A dataset which has been parsed into ready-to-send bulk request bodies.
+ *
+ * @see DataReader#compile(java.io.InputStream)
+ * @see DataReader#read(CompiledDataset)
+ */
+public final class CompiledDataset {
+    private final List<String> bulkBodies;
+    private final List<long[]> bulkLines;
+    private final Set<String> indices;
+    private final long size;
+
+    CompiledDataset(List<String> bulkBodies, List<long[]> bulkLines, Set<String> indices) {
+        this.bulkBodies = Collections.unmodifiableList(bulkBodies);
+        this.bulkLines = Collections.unmodifiableList(bulkLines);
+        this.indices = Collections.unmodifiableSet(indices);
+
+        long bodySize = 0L;
+        for (String bulkBody : bulkBodies) {
+            bodySize += bulkBody.length();
+        }
+        this.size = bodySize;
+    }
+
+    /**
+     * The bulk request bodies in the newline delimited JSON format of the Bulk API.
+     */
+    public List<String> getBulkBodies() {
+        return bulkBodies;
+    }
+
+    /**
+     * The dataset line numbers of the actions in every bulk request body, {@literal 0} if unknown.
+     */
+    List<long[]> getBulkLines() {
+        return bulkLines;
+    }
+
+    /**
+     * The names of all indices written to by the dataset.
+     */
+    public Set<String> getIndices() {
+        return indices;
+    }
+
+    /**
+     * The total length of all bulk request bodies in characters.
+     */
+    public long getSize() {
+        return size;
+    }
+}
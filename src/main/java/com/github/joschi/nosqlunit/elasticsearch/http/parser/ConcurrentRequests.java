@@ -0,0 +1,62 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executes independent requests asynchronously and collects their failures until {@link #await()} is called.
+ */
+class ConcurrentRequests {
+    private final JestClient client;
+    private final List<CompletableFuture<String>> pendingRequests = new ArrayList<>();
+
+    ConcurrentRequests(JestClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Execute the given request asynchronously.
+     *
+     * @param action       The request to execute
+     * @param errorMessage The prefix of the error message reported if the request fails
+     */
+    <T extends JestResult> void submit(Action<T> action, String errorMessage) {
+        final CompletableFuture<String> failure = new CompletableFuture<>();
+        client.executeAsync(action, new JestResultHandler<T>() {
+            @Override
+            public void completed(T result) {
+                failure.complete(result.isSucceeded() ? null : errorMessage + result.getErrorMessage());
+            }
+
+            @Override
+            public void failed(Exception e) {
+                failure.complete(errorMessage + e.getMessage());
+            }
+        });
+        pendingRequests.add(failure);
+    }
+
+    /**
+     * Wait for all submitted requests to complete and report their failures.
+     */
+    void await() {
+        final List<String> failures = new ArrayList<>();
+        for (CompletableFuture<String> pendingRequest : pendingRequests) {
+            final String failure = pendingRequest.join();
+            if (failure != null) {
+                failures.add(failure);
+            }
+        }
+        pendingRequests.clear();
+
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(String.join("\n", failures));
+        }
+    }
+}
@@ -1,30 +1,45 @@
 package com.github.joschi.nosqlunit.elasticsearch.http.parser;
 
-import com.google.common.base.MoreObjects;
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchMetricsListener;
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchMetricsListener.Phase;
+import com.github.joschi.nosqlunit.elasticsearch.http.IndexNamespace;
+import com.github.joschi.nosqlunit.elasticsearch.http.RefreshPolicy;
+import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
-import io.searchbox.core.Bulk;
-import io.searchbox.core.BulkResult;
-import io.searchbox.core.Index;
-import io.searchbox.indices.CreateIndex;
 import io.searchbox.indices.Refresh;
+import io.searchbox.indices.settings.GetSettings;
+import io.searchbox.indices.settings.UpdateSettings;
 import io.searchbox.indices.template.DeleteTemplate;
 import io.searchbox.indices.template.PutTemplate;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class DataReader {
     private static final Gson GSON = new Gson();
+    private static final String SETTINGS_ELEMENT = "settings";
+    private static final String NUMBER_OF_REPLICAS_SETTING = "index.number_of_replicas";
+    private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    // Elasticsearch 5.x uses "template", Elasticsearch 6.0 and later use "index_patterns"
+    private static final List<String> TEMPLATE_PATTERN_ELEMENTS = ImmutableList.of("template", "index_patterns");
 
     public static final String DOCUMENTS_ELEMENT = "documents";
     public static final String DOCUMENT_ELEMENT = "document";
@@ -38,64 +53,273 @@ public class DataReader {
     private final boolean createIndices;
     private final Map<String, Object> indexSettings;
     private final Map<String, Map<String, Object>> templates;
+    private final int bulkActions;
+    private final long bulkSize;
+    private final int maxConcurrentBulkRequests;
+    private final RefreshPolicy refreshPolicy;
+    private final boolean bulkLoadProfile;
+    private final IndexNamespace indexNamespace;
+    private final ElasticsearchMetricsListener metricsListener;
+    private final Set<String> indices = new LinkedHashSet<>();
+    private final Set<String> bulkLoadIndices = new LinkedHashSet<>();
+    private final Map<String, JsonObject> originalIndexSettings = new LinkedHashMap<>();
+    private final IndexCreator indexCreator;
 
     public DataReader(JestClient client,
                       boolean createIndices,
                       Map<String, Object> indexSettings,
                       Map<String, Map<String, Object>> templates) {
+        this(client, ElasticsearchConfiguration.remoteElasticsearch()
+                .createIndices(createIndices)
+                .indexSettings(indexSettings)
+                .indexTemplates(templates)
+                .build(client));
+    }
+
+    /**
+     * Create a new {@link DataReader} for the given {@link JestClient}.
+     *
+     * @param client        The client used to index the data
+     * @param configuration The configuration for creating indices and bulk indexing, its client is ignored
+     */
+    public DataReader(JestClient client, ElasticsearchConfiguration configuration) {
+        this(client, configuration, configuration.getMetricsListener());
+    }
+
+    /**
+     * Create a new {@link DataReader} for the given {@link JestClient} which reports its metrics to the given listener.
+     *
+     * @param client          The client used to index the data
+     * @param configuration   The configuration for creating indices and bulk indexing, its client and metrics listener are ignored
+     * @param metricsListener The listener receiving the metrics of all indexed datasets
+     */
+    public DataReader(JestClient client, ElasticsearchConfiguration configuration, ElasticsearchMetricsListener metricsListener) {
         this.client = client;
-        this.createIndices = createIndices;
-        this.indexSettings = indexSettings;
-        this.templates = templates;
+        this.createIndices = configuration.isCreateIndices();
+        this.indexSettings = configuration.getIndexSettings();
+        this.indexNamespace = configuration.getIndexNamespace();
+        this.templates = namespacedTemplates(configuration.getIndexTemplates(), indexNamespace);
+        this.bulkActions = configuration.getBulkActions();
+        this.bulkSize = configuration.getBulkSize();
+        this.maxConcurrentBulkRequests = configuration.getMaxConcurrentBulkRequests();
+        this.refreshPolicy = configuration.getRefreshPolicy();
+        this.bulkLoadProfile = configuration.isBulkLoadProfile() && createIndices;
+        this.metricsListener = metricsListener;
+        this.indexCreator = new IndexCreator(client, indexSettings);
     }
 
+    /**
+     * Read the dataset from the given {@link InputStream} and index its documents.
+     * <p>
+     * The dataset is streamed, i. e. every document is indexed right after it has been parsed, so that memory
+     * consumption doesn't depend on the size of the dataset. The document sources are copied from the dataset
+     * into the bulk requests without being parsed into objects.
+     * <p>
+     * Datasets in the newline delimited JSON format of the Bulk API are detected by their first line and
+     * sent to Elasticsearch as they are, failed actions are reported with their line number in the dataset.
+     * Gzip and Zstandard compressed datasets are decompressed on the fly.
+     * <p>
+     * The index names of the dataset are prefixed with the configured {@link IndexNamespace}.
+     *
+     * @param data The dataset to index
+     */
     public void read(InputStream data) {
+        load(bulkIndexer -> readDataset(data,
+                (indexes, source) -> processDocument(indexes, source, createIndices,
+                        (index, type, id, documentSource) -> {
+                            indices.add(index);
+                            bulkIndexer.index(index, type, id, documentSource);
+                        }),
+                (index, metadata, source, line) -> {
+                    indices.add(index);
+                    if (createIndices) {
+                        createIndex(index);
+                    }
+                    bulkIndexer.add(metadata, source, line);
+                }));
+    }
+
+    /**
+     * Index the documents of a dataset which has been compiled with {@link #compile(InputStream)} before.
+     *
+     * @param dataset The compiled dataset to index
+     */
+    public void read(CompiledDataset dataset) {
+        load(bulkIndexer -> {
+            if (createIndices) {
+                for (String index : dataset.getIndices()) {
+                    createIndex(index);
+                }
+            }
+
+            indices.addAll(dataset.getIndices());
+            final List<String> bulkBodies = dataset.getBulkBodies();
+            final List<long[]> bulkLines = dataset.getBulkLines();
+            for (int i = 0; i < bulkBodies.size(); i++) {
+                bulkIndexer.addBody(bulkBodies.get(i), bulkLines.get(i));
+            }
+        });
+    }
+
+    /**
+     * Parse the dataset from the given {@link InputStream} into bulk request bodies which can be indexed
+     * with {@link #read(CompiledDataset)} any number of times, without parsing the dataset again.
+     * <p>
+     * The bulk request bodies are split according to the configured bulk actions and bulk size.
+     * No requests are sent to Elasticsearch.
+     *
+     * @param data The dataset to compile
+     * @return The compiled dataset
+     */
+    public CompiledDataset compile(InputStream data) throws IOException {
+        final long start = System.nanoTime();
+        final List<String> bulkBodies = new ArrayList<>();
+        final List<long[]> bulkLines = new ArrayList<>();
+        final Set<String> compiledIndices = new LinkedHashSet<>();
+        final BulkBodyWriter bodyWriter = new BulkBodyWriter(bulkActions, bulkSize, (body, lines) -> {
+            bulkBodies.add(body);
+            bulkLines.add(lines);
+        });
+
+        readDataset(data,
+                (indexes, source) -> processDocument(indexes, source, false,
+                        (index, type, id, documentSource) -> {
+                            compiledIndices.add(index);
+                            bodyWriter.index(index, type, id, documentSource);
+                        }),
+                (index, metadata, source, line) -> {
+                    compiledIndices.add(index);
+                    bodyWriter.add(metadata, source, line);
+                });
+        bodyWriter.flush();
+        metricsListener.phaseCompleted(Phase.PARSE, System.nanoTime() - start);
+
+        return new CompiledDataset(bulkBodies, bulkLines, compiledIndices);
+    }
+
+    private void readDataset(InputStream data,
+                                    RawDocumentReader.RawDocumentConsumer documentConsumer,
+                                    BulkDatasetReader.BulkActionConsumer actionConsumer) throws IOException {
+        final InputStream dataset = DatasetDecompressor.decompress(data);
+        if (BulkDatasetReader.isBulkFormat(dataset)) {
+            new BulkDatasetReader(indexNamespace::indexName).read(dataset, actionConsumer);
+        } else {
+            new RawDocumentReader().read(dataset, documentConsumer);
+        }
+    }
+
+    private void load(BulkLoad bulkLoad) {
         try {
-            final List<Map<String, Object>> documents = getDocuments(data);
+            long start = System.nanoTime();
             if (!templates.isEmpty()) {
                 createTemplates(templates);
+                start = phaseCompleted(Phase.TEMPLATES, start);
             }
 
-            if (createIndices) {
-                createIndices(documents, indexSettings);
+            // Waiting for a refresh would block until the refresh interval of the bulk load profile has been restored
+            // Bulk requests must not be sent before the indices they write to have been created
+            final BulkIndexer bulkIndexer = new BulkIndexer(client, bulkActions, bulkSize, maxConcurrentBulkRequests,
+                    refreshPolicy == RefreshPolicy.WAIT_FOR && !bulkLoadProfile, this::awaitIndexCreation,
+                    metricsListener);
+            try {
+                bulkLoad.load(bulkIndexer);
+                bulkIndexer.finish();
+            } finally {
+                bulkIndexer.awaitCompletion();
+            }
+            start = phaseCompleted(Phase.BULK_INDEXING, start);
+
+            final boolean indicesCreated = indexCreator.awaitActiveShards();
+            // Indices without any bulk request never got the bulk load profile
+            bulkLoadIndices.clear();
+            if (!originalIndexSettings.isEmpty()) {
+                restoreIndexSettings();
+                originalIndexSettings.clear();
+            }
+            if (indicesCreated) {
+                start = phaseCompleted(Phase.INDEX_CREATION, start);
             }
-
-            insertDocuments(documents);
 
             if (!templates.isEmpty()) {
                 deleteTemplates(templates.keySet());
-                refreshNode();
+                start = phaseCompleted(Phase.TEMPLATES, start);
             }
 
-            refreshNode();
+            refresh();
+            phaseCompleted(Phase.REFRESH, start);
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
-    private void deleteTemplates(Set<String> templates) throws IOException {
+    /**
+     * Report the completed phase to the metrics listener.
+     *
+     * @param start The start of the phase as returned by {@link System#nanoTime()}
+     * @return The end of the phase, i. e. the start of the next phase
+     */
+    private long phaseCompleted(Phase phase, long start) {
+        final long end = System.nanoTime();
+        metricsListener.phaseCompleted(phase, end - start);
+        return end;
+    }
+
+    /**
+     * The names of all indices which have been created or written to by this {@link DataReader}.
+     */
+    public Set<String> getIndices() {
+        return Collections.unmodifiableSet(indices);
+    }
+
+    private void deleteTemplates(Set<String> templates) {
+        final ConcurrentRequests requests = new ConcurrentRequests(client);
         for (String template : templates) {
             final DeleteTemplate deleteTemplate = new DeleteTemplate.Builder(template).build();
-            final JestResult result = client.execute(deleteTemplate);
-            if (!result.isSucceeded()) {
-                throw new IllegalStateException("Error while deleting template \"" + template + "\": " + result.getErrorMessage());
-            }
+            requests.submit(deleteTemplate, "Error while deleting template \"" + template + "\": ");
         }
+        requests.await();
     }
 
-    private void createTemplates(Map<String, Map<String, Object>> templates) throws IOException {
+    private void createTemplates(Map<String, Map<String, Object>> templates) {
+        final ConcurrentRequests requests = new ConcurrentRequests(client);
         for (Map.Entry<String, Map<String, Object>> template : templates.entrySet()) {
             final String templateName = template.getKey();
             final PutTemplate putTemplate = new PutTemplate.Builder(templateName, template.getValue()).build();
-            final JestResult result = client.execute(putTemplate);
-            if (!result.isSucceeded()) {
-                throw new IllegalStateException("Error while creating template \"" + templateName + "\": " + result.getErrorMessage());
-            }
+            requests.submit(putTemplate, "Error while creating template \"" + templateName + "\": ");
         }
+        requests.await();
     }
 
-    private void refreshNode() {
-        final Refresh request = new Refresh.Builder().build();
+    private void refresh() {
+        switch (refreshPolicy) {
+            case ALL:
+                refreshIndices(indexNamespace.isEnabled()
+                        ? Collections.singleton(indexNamespace.getIndexPattern())
+                        : Collections.emptySet());
+                break;
+            case WAIT_FOR:
+                if (!bulkLoadProfile) {
+                    // The last bulk request has already waited for the refresh
+                    break;
+                }
+                // fall through, the bulk load profile disabled periodic refreshes while loading
+            case TOUCHED_INDICES:
+                if (!indices.isEmpty()) {
+                    refreshIndices(indices);
+                }
+                break;
+            default:
+                // NONE never refreshes
+                break;
+        }
+    }
+
+    private void refreshIndices(Set<String> indices) {
+        // An empty set of indices means all indices
+        final Refresh request = new Refresh.Builder()
+                .addIndex(indices)
+                .ignoreUnavailable(true)
+                .build();
         try {
             final JestResult result = client.execute(request);
             if (!result.isSucceeded()) {
@@ -106,142 +330,220 @@ public class DataReader {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void createIndices(List<Map<String, Object>> documents, Map<String, Object> indexSettings) throws IOException {
-        for (Map<String, Object> document : documents) {
-            final Object object = document.get(DOCUMENT_ELEMENT);
-
-            if (object instanceof List) {
-                final List<Map<String, Object>> properties = (List<Map<String, Object>>) object;
-                createIndex(properties, indexSettings);
-            } else {
-                throw new IllegalArgumentException("Array of Indexes and Data are required.");
+    private void processDocument(List<Map<String, String>> indexes,
+                                 String source,
+                                 boolean createIndices,
+                                 IndexAction indexAction) throws IOException {
+        for (Map<String, String> indexInformation : indexes) {
+            if (!indexInformation.containsKey(INDEX_NAME_ELEMENT)) {
+                throw new IllegalArgumentException("Missing index name element in " + indexInformation);
             }
         }
-    }
 
-    private void insertDocuments(List<Map<String, Object>> documents) throws IOException {
-        for (Map<String, Object> document : documents) {
-            final Object object = document.get(DOCUMENT_ELEMENT);
-
-            if (object instanceof List) {
-                @SuppressWarnings("unchecked") final List<Map<String, Object>> properties = (List<Map<String, Object>>) object;
-                insertDocument(properties);
-            } else {
-                throw new IllegalArgumentException("Array of Indexes and Data are required.");
+        if (createIndices) {
+            for (Map<String, String> indexInformation : indexes) {
+                final String indexName = indexNamespace.indexName(indexInformation.get(INDEX_NAME_ELEMENT));
+                indices.add(indexName);
+                createIndex(indexName);
             }
         }
+
+        // The document source is shared by all indices of the document
+        for (Map<String, String> indexInformation : indexes) {
+            indexAction.index(
+                    indexNamespace.indexName(indexInformation.get(INDEX_NAME_ELEMENT)),
+                    indexInformation.get(INDEX_TYPE_ELEMENT),
+                    indexInformation.get(INDEX_ID_ELEMENT),
+                    source);
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    private void createIndex(List<Map<String, Object>> properties, Map<String, Object> indexSettings) throws IOException {
-        for (Map<String, Object> property : properties) {
-            if (property.containsKey(INDEX_ELEMENT)) {
-                final Map<String, String> indexInformation = (Map<String, String>) property.get(INDEX_ELEMENT);
-                final String indexName = indexInformation.get(INDEX_NAME_ELEMENT);
-                if (indexName == null) {
-                    throw new IllegalArgumentException("Missing index name element in " + indexInformation);
-                }
+    private void createIndex(String indexName) {
+        if (indexCreator.create(indexName) && bulkLoadProfile) {
+            bulkLoadIndices.add(indexName);
+        }
+    }
 
-                final CreateIndex request = new CreateIndex.Builder(indexName)
-                        .settings(indexSettings)
-                        .build();
-                final JestResult result = client.execute(request);
-                if (!result.isSucceeded()) {
-                    throw new IllegalStateException("Error while creating index " + indexName + ": " + result.getErrorMessage());
-                }
+    /**
+     * Wait for the pending index creations and apply the bulk load profile to the indices created since the last call.
+     */
+    private void awaitIndexCreation() {
+        indexCreator.awaitCreation();
+        if (!bulkLoadIndices.isEmpty()) {
+            try {
+                applyBulkLoadProfile(bulkLoadIndices);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to apply bulk load profile to indices " + bulkLoadIndices, e);
             }
+            bulkLoadIndices.clear();
         }
     }
 
-    private void insertDocument(List<Map<String, Object>> properties) throws IOException {
-        final List<Map<String, String>> indexes = new ArrayList<>();
-        Map<String, Object> dataOfDocument = new HashMap<>();
+    /**
+     * Remember the number of replicas and refresh interval of the given indices and disable replicas and periodic
+     * refreshes. The indices are created with the configured settings first, because the settings of a create index
+     * request would override the settings of matching index templates, which then couldn't be restored.
+     */
+    private void applyBulkLoadProfile(Set<String> indexNames) throws IOException {
+        final GetSettings getSettings = new GetSettings.Builder()
+                .addIndex(indexNames)
+                .build();
+        final JestResult settingsResult = client.execute(getSettings);
+        if (!settingsResult.isSucceeded()) {
+            throw new IllegalStateException("Error while reading settings of indices " + indexNames + ": " + settingsResult.getErrorMessage());
+        }
 
-        for (Map<String, Object> property : properties) {
-            if (property.containsKey(INDEX_ELEMENT)) {
-                @SuppressWarnings("unchecked") final Map<String, String> indexInformation = (Map<String, String>) property.get(INDEX_ELEMENT);
-                indexes.add(indexInformation);
-            } else {
-                if (property.containsKey(DATA_ELEMENT)) {
-                    dataOfDocument = dataOfDocument(property.get(DATA_ELEMENT));
-                }
-            }
+        for (String indexName : indexNames) {
+            final JsonObject settings = settingsResult.getJsonObject()
+                    .getAsJsonObject(indexName)
+                    .getAsJsonObject(SETTINGS_ELEMENT);
+            final JsonObject originalSettings = new JsonObject();
+            originalSettings.add(NUMBER_OF_REPLICAS_SETTING, setting(settings, NUMBER_OF_REPLICAS_SETTING));
+            originalSettings.add(REFRESH_INTERVAL_SETTING, setting(settings, REFRESH_INTERVAL_SETTING));
+            originalIndexSettings.put(indexName, originalSettings);
         }
 
-        insertIndexes(indexes, dataOfDocument);
+        final JsonObject bulkLoadSettings = new JsonObject();
+        bulkLoadSettings.addProperty(NUMBER_OF_REPLICAS_SETTING, 0);
+        bulkLoadSettings.addProperty(REFRESH_INTERVAL_SETTING, "-1");
+        updateSettings(indexNames, bulkLoadSettings, "Error while applying bulk load profile to indices ");
     }
 
-    private void insertIndexes(List<Map<String, String>> indexes, Map<String, Object> dataOfDocument) throws IOException {
-        final Bulk.Builder bulkBuilder = new Bulk.Builder();
-        for (Map<String, String> indexInformation : indexes) {
-            final Index indexDocument = indexDocument(indexInformation, dataOfDocument);
-            bulkBuilder.addAction(indexDocument);
+    /**
+     * Restore the number of replicas and refresh interval the indices had before the bulk load profile was applied.
+     * Settings which haven't been set explicitly or by a template are reset to the Elasticsearch defaults.
+     */
+    private void restoreIndexSettings() throws IOException {
+        // Indices created with the same settings are restored with a single request
+        final Map<JsonObject, Set<String>> indicesBySettings = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonObject> index : originalIndexSettings.entrySet()) {
+            indicesBySettings.computeIfAbsent(index.getValue(), settings -> new LinkedHashSet<>()).add(index.getKey());
         }
 
-        final BulkResult result = client.execute(bulkBuilder.build());
-        if (!result.isSucceeded()) {
-            final StringBuilder sb = new StringBuilder("Error while bulk indexing documents: ")
-                    .append(result.getErrorMessage());
-
-            if(!result.getFailedItems().isEmpty()) {
-                sb.append('\n');
-                for (BulkResult.BulkResultItem bulkResultItem : result.getFailedItems()) {
-                    final String s = MoreObjects.toStringHelper(BulkResult.BulkResultItem.class)
-                            .omitNullValues()
-                            .add("operation", bulkResultItem.operation)
-                            .add("index", bulkResultItem.index)
-                            .add("type", bulkResultItem.type)
-                            .add("id", bulkResultItem.id)
-                            .add("status", bulkResultItem.status)
-                            .add("error", bulkResultItem.error)
-                            .add("errorType", bulkResultItem.errorType)
-                            .add("errorReason", bulkResultItem.errorReason)
-                            .add("version", bulkResultItem.version)
-                            .toString();
-                    sb.append('\n').append(s);
-                }
-            }
-
-            throw new IllegalStateException(sb.toString());
+        for (Map.Entry<JsonObject, Set<String>> settings : indicesBySettings.entrySet()) {
+            updateSettings(settings.getValue(), settings.getKey(), "Error while restoring settings of indices ");
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> dataOfDocument(Object object) {
-        return (Map<String, Object>) object;
+    private void updateSettings(Set<String> indexNames, JsonObject settings, String errorMessage) throws IOException {
+        // JsonObject#toString() keeps null values, which reset the settings
+        final UpdateSettings request = new UpdateSettings.Builder(settings.toString())
+                .addIndex(indexNames)
+                .build();
+        final JestResult result = client.execute(request);
+        if (!result.isSucceeded()) {
+            throw new IllegalStateException(errorMessage + indexNames + ": " + result.getErrorMessage());
+        }
     }
 
-    private Index indexDocument(Map<String, String> indexInformation, Object source) {
-        if (!indexInformation.containsKey(INDEX_NAME_ELEMENT)) {
-            throw new IllegalArgumentException("Missing index name element in " + indexInformation);
+    /**
+     * The value of the given fully qualified setting in either nested or flat settings, {@link JsonNull} if it isn't set.
+     */
+    private static JsonElement setting(JsonObject settings, String key) {
+        if (settings.has(key)) {
+            return settings.get(key);
         }
 
-        final Index.Builder createIndexBuilder = new Index.Builder(source)
-                .index(indexInformation.get(INDEX_NAME_ELEMENT));
+        JsonElement element = settings;
+        for (String part : key.split("\\.")) {
+            if (!element.isJsonObject() || !element.getAsJsonObject().has(part)) {
+                return JsonNull.INSTANCE;
+            }
+            element = element.getAsJsonObject().get(part);
+        }
+        return element;
+    }
 
-        if (indexInformation.containsKey(INDEX_TYPE_ELEMENT)) {
-            createIndexBuilder.type(indexInformation.get(INDEX_TYPE_ELEMENT));
+    /**
+     * Prefix the names and the index patterns of the templates with the given {@link IndexNamespace}.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> namespacedTemplates(Map<String, Map<String, Object>> templates,
+                                                                       IndexNamespace indexNamespace) {
+        if (!indexNamespace.isEnabled()) {
+            return templates;
         }
 
-        if (indexInformation.containsKey(INDEX_ID_ELEMENT)) {
-            createIndexBuilder.id(indexInformation.get(INDEX_ID_ELEMENT));
+        final Map<String, Map<String, Object>> namespacedTemplates = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Object>> template : templates.entrySet()) {
+            final Map<String, Object> body = new LinkedHashMap<>(template.getValue());
+            for (String patternElement : TEMPLATE_PATTERN_ELEMENTS) {
+                final Object pattern = body.get(patternElement);
+                if (pattern instanceof String) {
+                    body.put(patternElement, indexNamespace.indexName((String) pattern));
+                } else if (pattern instanceof List) {
+                    final List<Object> patterns = new ArrayList<>();
+                    for (Object element : (List<Object>) pattern) {
+                        patterns.add(element instanceof String ? indexNamespace.indexName((String) element) : element);
+                    }
+                    body.put(patternElement, patterns);
+                }
+            }
+            namespacedTemplates.put(indexNamespace.indexName(template.getKey()), body);
         }
+        return namespacedTemplates;
+    }
 
-        return createIndexBuilder.build();
+    /**
+     * Read all documents of the given dataset into memory.
+     *
+     * @param data The dataset to read
+     * @return The list of documents in the dataset
+     * @see #readDocuments(InputStream, DocumentConsumer)
+     */
+    public static List<Map<String, Object>> getDocuments(InputStream data) throws IOException {
+        final List<Map<String, Object>> documents = new ArrayList<>();
+        readDocuments(data, documents::add);
+        return documents;
     }
 
+    /**
+     * Stream the documents of the given dataset one by one to the given {@link DocumentConsumer}.
+     * <p>
+     * Only a single element of the {@value #DOCUMENTS_ELEMENT} array is held in memory at any time.
+     * Gzip and Zstandard compressed datasets are decompressed on the fly.
+     *
+     * @param data     The dataset to read
+     * @param consumer The consumer receiving every document of the dataset in order
+     */
     @SuppressWarnings("unchecked")
-    public static List<Map<String, Object>> getDocuments(InputStream data) throws IOException {
-        try (Reader reader = new InputStreamReader(data)) {
-            final Map<String, Object> rootNode = (Map<String, Object>) GSON.fromJson(reader, Map.class);
-            final Object dataElements = rootNode.get(DOCUMENTS_ELEMENT);
+    public static void readDocuments(InputStream data, DocumentConsumer consumer) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(DatasetDecompressor.decompress(data), StandardCharsets.UTF_8))) {
+            boolean documentsFound = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (DOCUMENTS_ELEMENT.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        consumer.accept((Map<String, Object>) GSON.fromJson(reader, Map.class));
+                    }
+                    reader.endArray();
+                    documentsFound = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
 
-            if (dataElements instanceof List) {
-                return (List<Map<String, Object>>) dataElements;
-            } else {
+            if (!documentsFound) {
                 throw new IllegalArgumentException("Array of documents are required.");
             }
         }
     }
+
+    @FunctionalInterface
+    public interface DocumentConsumer {
+        void accept(Map<String, Object> document) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface IndexAction {
+        void index(String index, String type, String id, String source) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface BulkLoad {
+        void load(BulkIndexer bulkIndexer) throws IOException;
+    }
 }
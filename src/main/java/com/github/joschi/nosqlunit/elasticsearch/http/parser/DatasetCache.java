@@ -0,0 +1,86 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded cache of {@link CompiledDataset compiled datasets} which evicts the least recently used
+ * datasets once the total size of the cached datasets exceeds the maximum size.
+ */
+public final class DatasetCache {
+    private static final DatasetCache SHARED = new DatasetCache(0L);
+
+    private final Map<String, CompiledDataset> datasets = new LinkedHashMap<>(16, 0.75f, true);
+    private long maximumSize;
+    private long size = 0L;
+
+    /**
+     * Create a new {@link DatasetCache}.
+     *
+     * @param maximumSize The maximum total size of all cached datasets in characters
+     * @see CompiledDataset#getSize()
+     */
+    public DatasetCache(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Return the process-wide {@link DatasetCache}, making sure it can hold at least {@code maximumSize} characters.
+     *
+     * @param maximumSize The minimum of the maximum total size of all cached datasets in characters
+     */
+    public static DatasetCache shared(long maximumSize) {
+        SHARED.ensureMaximumSize(maximumSize);
+        return SHARED;
+    }
+
+    /**
+     * Return the cached dataset for the given key or {@literal null} if the dataset isn't cached.
+     *
+     * @param key The key of the dataset
+     */
+    public synchronized CompiledDataset get(String key) {
+        return datasets.get(key);
+    }
+
+    /**
+     * Cache the given dataset. Datasets larger than the maximum size of the cache aren't cached.
+     *
+     * @param key     The key of the dataset
+     * @param dataset The dataset to cache
+     */
+    public synchronized void put(String key, CompiledDataset dataset) {
+        if (dataset.getSize() > maximumSize) {
+            return;
+        }
+
+        final CompiledDataset previous = datasets.put(key, dataset);
+        if (previous != null) {
+            size -= previous.getSize();
+        }
+        size += dataset.getSize();
+
+        evict();
+    }
+
+    /**
+     * Remove all datasets from the cache.
+     */
+    public synchronized void clear() {
+        datasets.clear();
+        size = 0L;
+    }
+
+    private synchronized void ensureMaximumSize(long maximumSize) {
+        this.maximumSize = Math.max(this.maximumSize, maximumSize);
+    }
+
+    private void evict() {
+        final Iterator<CompiledDataset> iterator = datasets.values().iterator();
+        while (size > maximumSize && iterator.hasNext()) {
+            size -= iterator.next().getSize();
+            iterator.remove();
+        }
+    }
+}
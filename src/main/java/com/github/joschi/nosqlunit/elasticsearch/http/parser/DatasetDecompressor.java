@@ -0,0 +1,80 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transparently decompresses gzip and Zstandard compressed datasets, which are detected by their magic bytes.
+ * <p>
+ * Datasets are decompressed while being read, without temporary files or in-memory copies. Zstandard compressed
+ * datasets require {@code com.github.luben:zstd-jni} on the class path.
+ */
+final class DatasetDecompressor {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+    private static final boolean ZSTD_AVAILABLE = isClassAvailable("com.github.luben.zstd.ZstdInputStream");
+
+    private DatasetDecompressor() {
+    }
+
+    /**
+     * Return a stream of the decompressed dataset, or a stream of the dataset itself if it isn't compressed.
+     * The returned {@link InputStream} supports {@link InputStream#mark(int)}.
+     *
+     * @param data The (possibly compressed) dataset
+     */
+    static InputStream decompress(InputStream data) throws IOException {
+        final InputStream dataset = data.markSupported() ? data : new BufferedInputStream(data, BUFFER_SIZE);
+
+        if (startsWith(dataset, GZIP_MAGIC)) {
+            return new BufferedInputStream(new GZIPInputStream(dataset, BUFFER_SIZE), BUFFER_SIZE);
+        } else if (startsWith(dataset, ZSTD_MAGIC)) {
+            return new BufferedInputStream(zstdInputStream(dataset), BUFFER_SIZE);
+        } else {
+            return dataset;
+        }
+    }
+
+    private static InputStream zstdInputStream(InputStream dataset) throws IOException {
+        if (!ZSTD_AVAILABLE) {
+            throw new IllegalArgumentException("Zstandard compressed datasets require com.github.luben:zstd-jni on the class path.");
+        }
+        return Zstd.inputStream(dataset);
+    }
+
+    private static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, DatasetDecompressor.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static boolean startsWith(InputStream dataset, byte[] magic) throws IOException {
+        dataset.mark(magic.length);
+        try {
+            for (byte b : magic) {
+                if (dataset.read() != (b & 0xff)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            dataset.reset();
+        }
+    }
+
+    /**
+     * Holder of all references to the optional zstd-jni library, which is only loaded once the library
+     * is known to be on the class path.
+     */
+    private static final class Zstd {
+        private static InputStream inputStream(InputStream dataset) throws IOException {
+            return new com.github.luben.zstd.ZstdInputStream(dataset);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.cluster.Health;
+import io.searchbox.indices.CreateIndex;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Creates every index only once and concurrently with the creation of other indices.
+ * <p>
+ * Indices are created without waiting for their shards to become active. {@link #awaitCreation()} waits for
+ * the pending creations, {@link #awaitActiveShards()} additionally waits for the shards of all indices created
+ * since its last call with a single cluster health request.
+ */
+class IndexCreator {
+    private static final String WAIT_FOR_ACTIVE_SHARDS = "wait_for_active_shards";
+
+    private final JestClient client;
+    private final Object settings;
+    private final ConcurrentRequests requests;
+    private final Set<String> createdIndices = new LinkedHashSet<>();
+    private final Set<String> inactiveIndices = new LinkedHashSet<>();
+
+    /**
+     * @param client   The client used to create the indices
+     * @param settings The settings (or complete request body) of the created indices
+     */
+    IndexCreator(JestClient client, Object settings) {
+        this.client = client;
+        this.settings = settings;
+        this.requests = new ConcurrentRequests(client);
+    }
+
+    /**
+     * Start creating the given index unless it has been created before.
+     *
+     * @param indexName The name of the index
+     * @return {@literal true} if the index is being created, {@literal false} if it has been created before
+     */
+    boolean create(String indexName) {
+        if (!createdIndices.add(indexName)) {
+            return false;
+        }
+
+        final CreateIndex request = new CreateIndex.Builder(indexName)
+                .settings(settings)
+                .setParameter(WAIT_FOR_ACTIVE_SHARDS, 0)
+                .build();
+        requests.submit(request, "Error while creating index " + indexName + ": ");
+        inactiveIndices.add(indexName);
+        return true;
+    }
+
+    /**
+     * Wait for all pending index creations to complete.
+     */
+    void awaitCreation() {
+        requests.await();
+    }
+
+    /**
+     * Wait for all pending index creations to complete and for the primary shards of the created indices to become active.
+     *
+     * @return {@literal true} if indices have been created since the last call, {@literal false} otherwise
+     */
+    boolean awaitActiveShards() throws IOException {
+        awaitCreation();
+        if (inactiveIndices.isEmpty()) {
+            return false;
+        }
+
+        final Health request = new Health.Builder()
+                .addIndex(inactiveIndices)
+                .waitForStatus(Health.Status.YELLOW)
+                .build();
+        final JestResult result = client.execute(request);
+        if (!result.isSucceeded()) {
+            throw new IllegalStateException("Error while waiting for indices " + inactiveIndices + ": " + result.getErrorMessage());
+        }
+        inactiveIndices.clear();
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import com.google.common.base.Utf8;
+import com.google.gson.Gson;
+import io.searchbox.core.Bulk;
+
+/**
+ * {@link Bulk} request with a pre-built request body in the newline delimited JSON format of the Bulk API.
+ * The response is parsed into a {@link io.searchbox.core.BulkResult} just like for regular {@link Bulk} requests.
+ */
+class RawBulk extends Bulk {
+    private final String body;
+
+    RawBulk(String body) {
+        this(body, new Bulk.Builder());
+    }
+
+    /**
+     * @param body    The bulk request body
+     * @param builder The builder holding the parameters of the request, its actions are ignored
+     */
+    RawBulk(String body, Bulk.Builder builder) {
+        super(builder);
+        this.body = body;
+    }
+
+    /**
+     * The number of bytes of the UTF-8 encoded request body.
+     */
+    long getBodySize() {
+        return Utf8.encodedLength(body);
+    }
+
+    @Override
+    public String getData(Gson gson) {
+        return body;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RawBulk && super.equals(o) && body.equals(((RawBulk) o).body);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + body.hashCode();
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.parser;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader.DATA_ELEMENT;
+import static com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader.DOCUMENTS_ELEMENT;
+import static com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader.DOCUMENT_ELEMENT;
+import static com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader.INDEX_ELEMENT;
+
+/**
+ * Streams the documents of a dataset without building object trees for the document sources.
+ * <p>
+ * The tokens of every {@value DataReader#DATA_ELEMENT} element are copied from the dataset directly into
+ * a reusable buffer, which holds the document source as compact JSON. Numbers are copied verbatim.
+ */
+class RawDocumentReader {
+    private static final String EMPTY_SOURCE = "{}";
+
+    private final StringWriter sourceBuffer = new StringWriter();
+
+    /**
+     * Stream the documents of the given dataset one by one to the given {@link RawDocumentConsumer}.
+     *
+     * @param data     The dataset to read
+     * @param consumer The consumer receiving every document of the dataset in order
+     */
+    void read(InputStream data, RawDocumentConsumer consumer) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(data, StandardCharsets.UTF_8))) {
+            boolean documentsFound = false;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (DOCUMENTS_ELEMENT.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readDocument(reader, consumer);
+                    }
+                    reader.endArray();
+                    documentsFound = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (!documentsFound) {
+                throw new IllegalArgumentException("Array of documents are required.");
+            }
+        }
+    }
+
+    private void readDocument(JsonReader reader, RawDocumentConsumer consumer) throws IOException {
+        final List<Map<String, String>> indexes = new ArrayList<>();
+        String source = EMPTY_SOURCE;
+        boolean propertiesFound = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (DOCUMENT_ELEMENT.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                propertiesFound = true;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        final String name = reader.nextName();
+                        if (INDEX_ELEMENT.equals(name)) {
+                            indexes.add(readIndexInformation(reader));
+                        } else if (DATA_ELEMENT.equals(name)) {
+                            source = readSource(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!propertiesFound) {
+            throw new IllegalArgumentException("Array of Indexes and Data are required.");
+        }
+
+        consumer.accept(indexes, source);
+    }
+
+    private static Map<String, String> readIndexInformation(JsonReader reader) throws IOException {
+        final Map<String, String> indexInformation = new HashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else {
+                indexInformation.put(name, reader.nextString());
+            }
+        }
+        reader.endObject();
+
+        return indexInformation;
+    }
+
+    private String readSource(JsonReader reader) throws IOException {
+        sourceBuffer.getBuffer().setLength(0);
+        final JsonWriter writer = new JsonWriter(sourceBuffer);
+        copy(reader, writer);
+        writer.flush();
+
+        return sourceBuffer.toString();
+    }
+
+    private static void copy(JsonReader reader, JsonWriter writer) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    copy(reader, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                writer.beginObject();
+                while (reader.hasNext()) {
+                    writer.name(reader.nextName());
+                    copy(reader, writer);
+                }
+                reader.endObject();
+                writer.endObject();
+                break;
+            case STRING:
+                writer.value(reader.nextString());
+                break;
+            case NUMBER:
+                writer.jsonValue(reader.nextString());
+                break;
+            case BOOLEAN:
+                writer.value(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected JSON token " + reader.peek());
+        }
+    }
+
+    @FunctionalInterface
+    interface RawDocumentConsumer {
+        /**
+         * @param indexes The index information elements of the document
+         * @param source  The source of the document as compact JSON
+         */
+        void accept(List<Map<String, String>> indexes, String source) throws IOException;
+    }
+}
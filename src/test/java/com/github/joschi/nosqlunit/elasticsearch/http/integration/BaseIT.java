@@ -16,6 +16,19 @@ public abstract class BaseIT {
     }
 
     protected static String getServer(String resourceName) {
+        final String httpPort = loadProperties(resourceName).getProperty("httpPort", "9200");
+        return String.format("http://localhost:%s/", httpPort);
+    }
+
+    /**
+     * The location of the file system snapshot repository, which is listed in the {@code path.repo} setting of the
+     * Elasticsearch nodes.
+     */
+    protected static String getSnapshotRepository() {
+        return loadProperties(PROPERTIES_RESOURCE_NAME).getProperty("snapshotRepository");
+    }
+
+    private static Properties loadProperties(String resourceName) {
         final Properties properties = new Properties();
         final URL resource = Resources.getResource(resourceName);
         try (InputStream stream = resource.openStream()) {
@@ -23,8 +36,6 @@ public abstract class BaseIT {
         } catch (IOException e) {
             throw new UncheckedIOException("Error while reading test properties", e);
         }
-
-        final String httpPort = properties.getProperty("httpPort", "9200");
-        return String.format("http://localhost:%s/", httpPort);
+        return properties;
     }
 }
@@ -0,0 +1,218 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.integration;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchOperation;
+import com.github.joschi.nosqlunit.elasticsearch.http.LatencyHistogram;
+import com.github.joschi.nosqlunit.elasticsearch.http.TracingJestClient;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Count;
+import io.searchbox.core.CountResult;
+import io.searchbox.core.Index;
+import io.searchbox.core.Ping;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.indices.DeleteIndex;
+import io.searchbox.indices.IndicesExists;
+import io.searchbox.indices.Refresh;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CleanupIT extends BaseIT {
+    private static final String ELASTICSEARCH_DATA = "{\n" +
+            "   \"documents\":[\n" +
+            "      {\n" +
+            "         \"document\":[\n" +
+            "            {\n" +
+            "               \"index\":{\n" +
+            "                  \"indexName\":\"tweeter\",\n" +
+            "                  \"indexType\":\"tweet\",\n" +
+            "                  \"indexId\":\"1\"\n" +
+            "               }\n" +
+            "            },\n" +
+            "            {\n" +
+            "               \"data\":{\n" +
+            "                  \"name\":\"a\",\n" +
+            "                  \"msg\":\"b\"\n" +
+            "               }\n" +
+            "            }\n" +
+            "         ]\n" +
+            "      },\n" +
+            "      {\n" +
+            "         \"document\":[\n" +
+            "            {\n" +
+            "               \"index\":{\n" +
+            "                  \"indexName\":\"tweeter\",\n" +
+            "                  \"indexType\":\"tweet\",\n" +
+            "                  \"indexId\":\"2\"\n" +
+            "               }\n" +
+            "            },\n" +
+            "            {\n" +
+            "               \"data\":{\n" +
+            "                  \"name\":\"c\",\n" +
+            "                  \"msg\":\"d\"\n" +
+            "               }\n" +
+            "            }\n" +
+            "         ]\n" +
+            "      }\n" +
+            "   ]\n" +
+            "}";
+
+    private final JestClient client = ElasticsearchConfiguration.remoteElasticsearch(getServer()).build().getClient();
+
+    @After
+    public void tearDown() throws IOException {
+        client.execute(new DeleteIndex.Builder("tweeter").build());
+        client.execute(new DeleteIndex.Builder("untracked").build());
+        client.execute(new Refresh.Builder().build());
+        client.shutdownClient();
+    }
+
+    @Test
+    public void delete_by_query_should_remove_all_documents_but_keep_the_indices() throws IOException {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .deleteByQuerySlices(2)
+                .slowRequestThreshold(1L, TimeUnit.HOURS)
+                .build(client);
+        final ElasticsearchOperation operation = new ElasticsearchOperation(configuration);
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        assertThat(documentCount("tweeter"), is(2));
+
+        operation.deleteAll();
+
+        assertThat(documentCount("tweeter"), is(0));
+        final Map<String, LatencyHistogram> latencies = ((TracingJestClient) configuration.getClient()).getLatencies();
+        assertThat(latencies.get("DeleteByQuery").getCount(), is(1L));
+        assertThat(latencies.get("Search"), nullValue());
+    }
+
+    @Test
+    public void failed_scroll_delete_should_wait_for_the_pending_bulk_delete() throws IOException {
+        final ScrollFailingJestClient scrollFailingClient = new ScrollFailingJestClient(client);
+        final ElasticsearchOperation operation = new ElasticsearchOperation(ElasticsearchConfiguration.remoteElasticsearch()
+                .maxConcurrentBulkRequests(1)
+                .build(scrollFailingClient));
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        assertThat(scrollFailingClient.completedBulkRequests.get(), is(1));
+
+        try {
+            operation.deleteAll();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertThat(e.getCause().getMessage(), is("Scroll failed"));
+        }
+
+        assertThat(scrollFailingClient.completedBulkRequests.get(), is(2));
+    }
+
+    @Test
+    public void tracked_cleanup_should_delete_indices_written_by_datasets_of_previous_operations() throws IOException {
+        final JestResult indexResult = client.execute(new Index.Builder(Collections.singletonMap("name", "z"))
+                .index("untracked")
+                .type("tweet")
+                .id("1")
+                .refresh(true)
+                .build());
+        assertThat(indexResult.getErrorMessage(), indexResult.isSucceeded(), is(true));
+
+        // Every test gets a new rule and operation, so the data of one test is deleted by the operation of the next one
+        final ElasticsearchOperation insertingOperation = new ElasticsearchOperation(ElasticsearchConfiguration.remoteElasticsearch(getServer())
+                .deleteAllIndices(true)
+                .trackIndices(true)
+                .build());
+        insertingOperation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        insertingOperation.connectionManager().shutdownClient();
+
+        final ElasticsearchOperation deletingOperation = new ElasticsearchOperation(ElasticsearchConfiguration.remoteElasticsearch(getServer())
+                .deleteAllIndices(true)
+                .trackIndices(true)
+                .build());
+        deletingOperation.deleteAll();
+        deletingOperation.connectionManager().shutdownClient();
+
+        assertThat(client.execute(new IndicesExists.Builder("tweeter").build()).isSucceeded(), is(false));
+        assertThat(documentCount("untracked"), is(1));
+    }
+
+    private int documentCount(String index) throws IOException {
+        final CountResult countResult = client.execute(new Count.Builder().addIndex(index).build());
+        assertThat(countResult.getErrorMessage(), countResult.isSucceeded(), is(true));
+        return countResult.getCount().intValue();
+    }
+
+    /**
+     * Pretends to be an Elasticsearch 2.x node without the Delete By Query API, delays bulk requests
+     * and fails all scroll requests after the first page.
+     */
+    private static class ScrollFailingJestClient implements JestClient {
+        private static final String PING_RESPONSE = "{\"version\":{\"number\":\"2.4.6\"}}";
+
+        private final JestClient client;
+        private final AtomicInteger completedBulkRequests = new AtomicInteger();
+
+        private ScrollFailingJestClient(JestClient client) {
+            this.client = client;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends JestResult> T execute(Action<T> clientRequest) throws IOException {
+            if (clientRequest instanceof Ping) {
+                final JestResult result = new JestResult(new Gson());
+                result.setJsonObject(new JsonParser().parse(PING_RESPONSE).getAsJsonObject());
+                result.setSucceeded(true);
+                return (T) result;
+            } else if (clientRequest instanceof SearchScroll) {
+                throw new IOException("Scroll failed");
+            }
+            return client.execute(clientRequest);
+        }
+
+        @Override
+        public <T extends JestResult> void executeAsync(Action<T> clientRequest, JestResultHandler<? super T> jestResultHandler) {
+            if (!(clientRequest instanceof Bulk)) {
+                client.executeAsync(clientRequest, jestResultHandler);
+                return;
+            }
+
+            new Thread(() -> {
+                try {
+                    Thread.sleep(500L);
+                    final T result = client.execute(clientRequest);
+                    completedBulkRequests.incrementAndGet();
+                    jestResultHandler.completed(result);
+                } catch (Exception e) {
+                    jestResultHandler.failed(e);
+                }
+            }).start();
+        }
+
+        @Override
+        public void shutdownClient() {
+            client.shutdownClient();
+        }
+
+        @Override
+        public void setServers(Set<String> servers) {
+            client.setServers(servers);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import io.searchbox.client.JestResult;
 import io.searchbox.core.Count;
 import io.searchbox.core.CountResult;
 import io.searchbox.core.DocumentResult;
+import io.searchbox.core.Get;
 import io.searchbox.core.Index;
 import io.searchbox.indices.DeleteIndex;
 import io.searchbox.indices.Refresh;
@@ -82,6 +83,24 @@ public class ElasticsearchRuleIT extends BaseIT {
         assertThat(result.getCount().intValue(), is(5));
     }
 
+    @Test
+    @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+    public void testCompressedDataset() throws Exception {
+        final DocumentResult result = client.execute(new Get.Builder("test1", "0").type("test").build());
+
+        assertThat(result.getErrorMessage(), result.isSucceeded(), is(true));
+        assertThat(result.getJsonObject().getAsJsonObject("_source").getAsJsonPrimitive("name").getAsString(), is("Zstandard"));
+    }
+
+    @Test
+    @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+    public void testBulkDataset() throws Exception {
+        final DocumentResult result = client.execute(new Get.Builder("test1", "0").type("test").build());
+
+        assertThat(result.getErrorMessage(), result.isSucceeded(), is(true));
+        assertThat(result.getJsonObject().getAsJsonObject("_source").getAsJsonPrimitive("name").getAsString(), is("NDJSON"));
+    }
+
     @Test
     @UsingDataSet(loadStrategy = LoadStrategyEnum.DELETE_ALL)
     public void testDeleteAll() throws Exception {
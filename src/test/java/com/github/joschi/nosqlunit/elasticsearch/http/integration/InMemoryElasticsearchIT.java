@@ -0,0 +1,62 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.integration;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchRule;
+import com.github.joschi.nosqlunit.elasticsearch.http.inmemory.InMemoryElasticsearch;
+import com.lordofthejars.nosqlunit.annotation.ShouldMatchDataSet;
+import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
+import com.lordofthejars.nosqlunit.core.LoadStrategyEnum;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Count;
+import io.searchbox.core.CountResult;
+import io.searchbox.core.Search;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.inject.Inject;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class InMemoryElasticsearchIT {
+    @ClassRule
+    public static final InMemoryElasticsearch IN_MEMORY_ELASTICSEARCH = InMemoryElasticsearch.newInMemoryElasticsearchRule().build();
+
+    @Rule
+    public final ElasticsearchRule elasticsearchRule = ElasticsearchRule.newElasticsearchRule()
+            .remoteElasticsearch(IN_MEMORY_ELASTICSEARCH.getUrl());
+
+    @Inject
+    private JestClient client;
+
+    @Test
+    @UsingDataSet(locations = "ElasticsearchRuleIT.json", loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+    @ShouldMatchDataSet(location = "ElasticsearchRuleIT.json")
+    public void dataset_should_be_inserted_into_in_memory_elasticsearch() throws Exception {
+        final CountResult result = client.execute(new Count.Builder().addIndex("test1").build());
+
+        assertThat(result.getErrorMessage(), result.isSucceeded(), is(true));
+        assertThat(result.getCount().intValue(), is(2));
+    }
+
+    @Test
+    @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+    @ShouldMatchDataSet
+    public void compressed_bulk_dataset_should_match_plain_expected_dataset() throws Exception {
+        final CountResult result = client.execute(new Count.Builder().addIndex("test1").build());
+
+        assertThat(result.getErrorMessage(), result.isSucceeded(), is(true));
+        assertThat(result.getCount().intValue(), is(1));
+    }
+
+    @Test
+    public void unsupported_queries_should_be_rejected() throws Exception {
+        final Search search = new Search.Builder("{\"query\":{\"term\":{\"name\":\"Foobar\"}}}").build();
+        final JestResult result = client.execute(search);
+
+        assertThat(result.isSucceeded(), is(false));
+        assertThat(result.getErrorMessage(), containsString("match_all"));
+    }
+}
@@ -1,11 +1,20 @@
 package com.github.joschi.nosqlunit.elasticsearch.http.integration;
 
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.TracingJestClient;
+import io.searchbox.client.JestClient;
+import io.searchbox.core.Count;
+import io.searchbox.core.CountResult;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import static com.github.joschi.nosqlunit.elasticsearch.http.LowLevelElasticSearchOperations.assertThatConnectionToElasticsearchIsPossible;
+import static com.github.joschi.nosqlunit.elasticsearch.http.LowLevelElasticSearchOperations.waitUntilElasticsearchIsReady;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 
 public class LowLevelElasticSearchOperationsIT extends BaseIT {
@@ -13,7 +22,44 @@ public class LowLevelElasticSearchOperationsIT extends BaseIT {
 
     @Test
     public void successful_connection_should_not_throw() throws IOException {
-        assertThatConnectionToElasticsearchIsPossible(serverAddress);
+        final long timeToReady = assertThatConnectionToElasticsearchIsPossible(serverAddress);
+
+        assertThat(timeToReady, lessThanOrEqualTo(TimeUnit.SECONDS.toMillis(9L)));
+    }
+
+    @Test
+    public void ready_cluster_should_report_time_to_ready() throws IOException {
+        final long timeToReady = waitUntilElasticsearchIsReady(Collections.singleton(serverAddress), 30L, TimeUnit.SECONDS);
+
+        assertThat(timeToReady, lessThanOrEqualTo(TimeUnit.SECONDS.toMillis(30L)));
+    }
+
+    @Test
+    public void traced_wait_should_report_time_to_ready() throws IOException {
+        final long timeToReady = waitUntilElasticsearchIsReady(Collections.singleton(serverAddress), 30L, TimeUnit.SECONDS,
+                0L, TimeUnit.MILLISECONDS);
+
+        assertThat(timeToReady, lessThanOrEqualTo(TimeUnit.SECONDS.toMillis(30L)));
+    }
+
+    @Test
+    public void wait_should_probe_with_given_client() throws IOException {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch(serverAddress)
+                .slowRequestThreshold(1L, TimeUnit.HOURS)
+                .build();
+        final JestClient client = configuration.getClient();
+        try {
+            final long timeToReady = waitUntilElasticsearchIsReady(client, 30L, TimeUnit.SECONDS);
+
+            assertThat(timeToReady, lessThanOrEqualTo(TimeUnit.SECONDS.toMillis(30L)));
+            assertThat(((TracingJestClient) client).getLatencies().get("Health").getCount(), is(1L));
+
+            // The client is still open
+            final CountResult countResult = client.execute(new Count.Builder().build());
+            assertThat(countResult.getErrorMessage(), countResult.isSucceeded(), is(true));
+        } finally {
+            client.shutdownClient();
+        }
     }
 
     @Test
@@ -1,8 +1,15 @@
 package com.github.joschi.nosqlunit.elasticsearch.http.integration;
 
 import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchMetrics;
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchMetricsListener;
 import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchOperation;
+import com.github.joschi.nosqlunit.elasticsearch.http.IndexNamespace;
+import com.github.joschi.nosqlunit.elasticsearch.http.LatencyHistogram;
+import com.github.joschi.nosqlunit.elasticsearch.http.TracingJestClient;
 import io.searchbox.client.JestClient;
+import io.searchbox.core.Count;
+import io.searchbox.core.CountResult;
 import io.searchbox.core.DocumentResult;
 import io.searchbox.core.Get;
 import io.searchbox.indices.DeleteIndex;
@@ -15,10 +22,12 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.collection.IsMapContaining.hasEntry;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class RemoteElasticsearchIT extends BaseIT {
     private static final String ELASTICSEARCH_DATA = "{\n" +
@@ -42,6 +51,7 @@ public class RemoteElasticsearchIT extends BaseIT {
             "      }\n" +
             "   ]\n" +
             "}";
+    private static final IndexNamespace INDEX_NAMESPACE = IndexNamespace.prefix("namespace-");
 
     private final JestClient client;
     private ElasticsearchOperation elasticsearchOperation;
@@ -68,6 +78,7 @@ public class RemoteElasticsearchIT extends BaseIT {
     public void removeIndexes() throws IOException {
         final DeleteIndex deleteIndex = new DeleteIndex.Builder("tweeter").build();
         client.execute(deleteIndex);
+        client.execute(new DeleteIndex.Builder(INDEX_NAMESPACE.indexName("tweeter")).build());
         final Refresh refresh = new Refresh.Builder().build();
         client.execute(refresh);
     }
@@ -105,4 +116,145 @@ public class RemoteElasticsearchIT extends BaseIT {
 
         assertThat(isEqual, is(true));
     }
+
+    @Test
+    public void namespaced_operations_should_only_see_and_delete_indexes_of_their_namespace() throws IOException {
+        final ElasticsearchOperation namespacedOperation = new ElasticsearchOperation(ElasticsearchConfiguration
+                .remoteElasticsearch()
+                .indexNamespace(INDEX_NAMESPACE)
+                .build(client));
+        elasticsearchOperation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        namespacedOperation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        assertThat(namespacedOperation.databaseIs(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes())), is(true));
+
+        namespacedOperation.deleteAll();
+
+        final DocumentResult namespacedDocument = client.execute(new Get.Builder(INDEX_NAMESPACE.indexName("tweeter"), "1").type("tweet").build());
+        assertThat(namespacedDocument.isSucceeded(), is(false));
+        final DocumentResult otherDocument = client.execute(new Get.Builder("tweeter", "1").type("tweet").build());
+        assertThat(otherDocument.isSucceeded(), is(true));
+    }
+
+    @Test
+    public void metrics_listener_should_receive_metrics_of_all_phases() {
+        final ElasticsearchMetrics metrics = new ElasticsearchMetrics();
+        final ElasticsearchOperation operation = new ElasticsearchOperation(ElasticsearchConfiguration
+                .remoteElasticsearch()
+                .metricsListener(metrics)
+                .build(client));
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        operation.databaseIs(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        operation.deleteAll();
+
+        assertThat(metrics.getBulkRequests(), is(1L));
+        assertThat(metrics.getBytesSent() > 0L, is(true));
+        assertThat(metrics.getIndexedDocuments(), is(1L));
+        assertThat(metrics.getFailedActions(), is(0L));
+        assertThat(metrics.getPhaseCount(ElasticsearchMetricsListener.Phase.BULK_INDEXING), is(1L));
+        assertThat(metrics.getPhaseCount(ElasticsearchMetricsListener.Phase.REFRESH), is(1L));
+        assertThat(metrics.getPhaseCount(ElasticsearchMetricsListener.Phase.COMPARISON), is(1L));
+        assertThat(metrics.getPhaseCount(ElasticsearchMetricsListener.Phase.CLEANUP), is(1L));
+        // No index has been created explicitly
+        assertThat(metrics.getPhaseCount(ElasticsearchMetricsListener.Phase.INDEX_CREATION), is(0L));
+    }
+
+    @Test
+    public void metrics_listener_passed_to_operation_should_replace_configured_listener() {
+        final ElasticsearchMetrics configuredMetrics = new ElasticsearchMetrics();
+        final ElasticsearchMetrics operationMetrics = new ElasticsearchMetrics();
+        final ElasticsearchOperation operation = new ElasticsearchOperation(ElasticsearchConfiguration
+                .remoteElasticsearch()
+                .createIndices(true)
+                .metricsListener(configuredMetrics)
+                .build(client), operationMetrics);
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        operation.deleteAll();
+
+        assertThat(operationMetrics.getBulkRequests(), is(1L));
+        assertThat(operationMetrics.getPhaseCount(ElasticsearchMetricsListener.Phase.INDEX_CREATION), is(1L));
+        assertThat(operationMetrics.getPhaseCount(ElasticsearchMetricsListener.Phase.CLEANUP), is(1L));
+        assertThat(configuredMetrics.getBulkRequests(), is(0L));
+        assertThat(configuredMetrics.getPhaseCount(ElasticsearchMetricsListener.Phase.INDEX_CREATION), is(0L));
+        assertThat(configuredMetrics.getPhaseCount(ElasticsearchMetricsListener.Phase.CLEANUP), is(0L));
+    }
+
+    @Test
+    public void dataset_cache_should_only_parse_datasets_fitting_into_the_cache_once() throws IOException {
+        final ElasticsearchMetrics metrics = new ElasticsearchMetrics();
+        final ElasticsearchOperation operation = new ElasticsearchOperation(ElasticsearchConfiguration
+                .remoteElasticsearch()
+                .indexNamespace(INDEX_NAMESPACE)
+                .datasetCacheSize(ELASTICSEARCH_DATA.length())
+                .metricsListener(metrics)
+                .build(client));
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        operation.deleteAll();
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        assertThat(metrics.getPhaseCount(ElasticsearchMetricsListener.Phase.PARSE), is(1L));
+        assertThat(metrics.getIndexedDocuments(), is(2L));
+        assertThat(operation.databaseIs(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes())), is(true));
+        operation.deleteAll();
+
+        // Datasets larger than the cache are indexed while they're being read, the changed content isn't cached yet
+        final ElasticsearchMetrics uncachedMetrics = new ElasticsearchMetrics();
+        final ElasticsearchOperation uncachedOperation = new ElasticsearchOperation(ElasticsearchConfiguration
+                .remoteElasticsearch()
+                .indexNamespace(INDEX_NAMESPACE)
+                .datasetCacheSize(10L)
+                .metricsListener(uncachedMetrics)
+                .build(client));
+
+        uncachedOperation.insert(new ByteArrayInputStream((ELASTICSEARCH_DATA + '\n').getBytes()));
+
+        assertThat(uncachedMetrics.getPhaseCount(ElasticsearchMetricsListener.Phase.PARSE), is(0L));
+        assertThat(uncachedMetrics.getIndexedDocuments(), is(1L));
+        assertThat(uncachedOperation.databaseIs(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes())), is(true));
+    }
+
+    @Test
+    public void tracing_client_should_record_latencies_per_action_type() {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .slowRequestThreshold(0L, TimeUnit.MILLISECONDS)
+                .build(client);
+        final ElasticsearchOperation operation = new ElasticsearchOperation(configuration);
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        final Map<String, LatencyHistogram> latencies = ((TracingJestClient) configuration.getClient()).getLatencies();
+        assertThat(latencies.get("Bulk").getCount(), is(1L));
+        assertThat(latencies.get("Refresh").getCount(), is(1L));
+        assertThat(latencies.get("Bulk").getPercentileNanos(100.0d), is(latencies.get("Bulk").getMaxNanos()));
+    }
+
+    @Test
+    public void shared_client_should_stay_open_after_releasing_other_references() throws IOException {
+        final ElasticsearchConfiguration.Builder builder = ElasticsearchConfiguration.remoteElasticsearch(getServer())
+                .sharedClient(true);
+        final ElasticsearchConfiguration first = builder.build();
+        final ElasticsearchConfiguration second = ElasticsearchConfiguration.remoteElasticsearch(getServer())
+                .sharedClient(true)
+                .build();
+        assertThat(builder.sharedClientReferences(), is(2));
+
+        first.getClient().shutdownClient();
+        first.getClient().shutdownClient();
+        assertThat(builder.sharedClientReferences(), is(1));
+
+        try {
+            second.getClient().setServers(Collections.singleton("http://localhost:1"));
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("The servers of a shared client can't be changed"));
+        }
+
+        final CountResult countResult = second.getClient().execute(new Count.Builder().build());
+        assertThat(countResult.getErrorMessage(), countResult.isSucceeded(), is(true));
+        second.getClient().shutdownClient();
+        assertThat(builder.sharedClientReferences(), is(0));
+    }
 }
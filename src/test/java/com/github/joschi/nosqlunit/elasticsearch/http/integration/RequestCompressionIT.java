@@ -0,0 +1,145 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.integration;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.inmemory.InMemoryElasticsearch;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.searchbox.client.JestClient;
+import io.searchbox.core.DocumentResult;
+import io.searchbox.core.Get;
+import io.searchbox.core.Index;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Sends requests through a recording proxy to an in-memory Elasticsearch, which decompresses gzip compressed
+ * request bodies.
+ */
+public class RequestCompressionIT {
+    @ClassRule
+    public static final InMemoryElasticsearch IN_MEMORY_ELASTICSEARCH = InMemoryElasticsearch.newInMemoryElasticsearchRule().build();
+
+    private static final String NO_CONTENT_ENCODING = "none";
+
+    private final Map<String, List<String>> contentEncodings = new ConcurrentHashMap<>();
+    private HttpServer proxy;
+
+    @Before
+    public void setUp() throws IOException {
+        proxy = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        proxy.createContext("/", this::forward);
+        proxy.start();
+    }
+
+    @After
+    public void tearDown() {
+        proxy.stop(0);
+    }
+
+    @Test
+    public void request_bodies_should_be_compressed_from_the_threshold_on() throws IOException {
+        final String smallSource = "{\"msg\":\"" + Strings.repeat("a", 1000) + "\"}";
+        final String largeSource = "{\"msg\":\"" + Strings.repeat("b", 1001) + "\"}";
+        final JestClient client = ElasticsearchConfiguration
+                .remoteElasticsearch("http://" + proxy.getAddress().getHostString() + ":" + proxy.getAddress().getPort())
+                .requestCompressionThreshold(largeSource.length())
+                .build()
+                .getClient();
+        try {
+            final DocumentResult smallResult = client.execute(new Index.Builder(smallSource).index("compression").type("test").id("small").build());
+            assertThat(smallResult.getErrorMessage(), smallResult.isSucceeded(), is(true));
+            final DocumentResult largeResult = client.execute(new Index.Builder(largeSource).index("compression").type("test").id("large").build());
+            assertThat(largeResult.getErrorMessage(), largeResult.isSucceeded(), is(true));
+
+            assertThat(contentEncodings.get("/compression/test/small").get(0), is(NO_CONTENT_ENCODING));
+            assertThat(contentEncodings.get("/compression/test/large").get(0), is("gzip"));
+
+            final DocumentResult largeDocument = client.execute(new Get.Builder("compression", "large").type("test").build());
+            assertThat(largeDocument.getErrorMessage(), largeDocument.isSucceeded(), is(true));
+            assertThat(largeDocument.getJsonObject().getAsJsonObject("_source").getAsJsonPrimitive("msg").getAsString(),
+                    is(Strings.repeat("b", 1001)));
+            assertThat(contentEncodings.get("/compression/test/large").size(), is(2));
+            assertThat(contentEncodings.get("/compression/test/large").get(1), is(NO_CONTENT_ENCODING));
+        } finally {
+            client.shutdownClient();
+        }
+    }
+
+    @Test
+    public void request_bodies_should_not_be_compressed_without_threshold() throws IOException {
+        final JestClient client = ElasticsearchConfiguration
+                .remoteElasticsearch("http://" + proxy.getAddress().getHostString() + ":" + proxy.getAddress().getPort())
+                .build()
+                .getClient();
+        try {
+            final String source = "{\"msg\":\"" + Strings.repeat("c", 10000) + "\"}";
+            final DocumentResult result = client.execute(new Index.Builder(source).index("compression").type("test").id("plain").build());
+            assertThat(result.getErrorMessage(), result.isSucceeded(), is(true));
+
+            assertThat(contentEncodings.get("/compression/test/plain").get(0), is(NO_CONTENT_ENCODING));
+        } finally {
+            client.shutdownClient();
+        }
+    }
+
+    private void forward(HttpExchange exchange) throws IOException {
+        try {
+            final String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            contentEncodings.computeIfAbsent(exchange.getRequestURI().getPath(), path -> new CopyOnWriteArrayList<>())
+                    .add(contentEncoding == null ? NO_CONTENT_ENCODING : contentEncoding);
+
+            final byte[] requestBody;
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                requestBody = ByteStreams.toByteArray(inputStream);
+            }
+
+            final HttpURLConnection connection = (HttpURLConnection) new URL(IN_MEMORY_ELASTICSEARCH.getUrl() + exchange.getRequestURI()).openConnection();
+            connection.setRequestMethod(exchange.getRequestMethod());
+            if (contentEncoding != null) {
+                connection.setRequestProperty("Content-Encoding", contentEncoding);
+            }
+            if (requestBody.length > 0) {
+                connection.setRequestProperty("Content-Type", exchange.getRequestHeaders().getFirst("Content-Type"));
+                connection.setDoOutput(true);
+                try (OutputStream outputStream = connection.getOutputStream()) {
+                    outputStream.write(requestBody);
+                }
+            }
+
+            final int status = connection.getResponseCode();
+            final byte[] responseBody;
+            try (InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                responseBody = inputStream == null ? new byte[0] : ByteStreams.toByteArray(inputStream);
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(status, responseBody.length == 0 ? -1L : responseBody.length);
+            if (responseBody.length > 0) {
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(responseBody);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
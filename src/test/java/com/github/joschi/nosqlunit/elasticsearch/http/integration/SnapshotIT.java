@@ -0,0 +1,187 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.integration;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchOperation;
+import com.github.joschi.nosqlunit.elasticsearch.http.LatencyHistogram;
+import com.github.joschi.nosqlunit.elasticsearch.http.TracingJestClient;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Count;
+import io.searchbox.core.CountResult;
+import io.searchbox.core.DocumentResult;
+import io.searchbox.core.Get;
+import io.searchbox.core.Index;
+import io.searchbox.indices.DeleteIndex;
+import io.searchbox.snapshot.DeleteSnapshot;
+import io.searchbox.snapshot.DeleteSnapshotRepository;
+import io.searchbox.snapshot.GetSnapshot;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotIT extends BaseIT {
+    private static final String REPOSITORY = "nosqlunit-snapshot-it";
+    private static final String ELASTICSEARCH_DATA = "{\n" +
+            "   \"documents\":[\n" +
+            "      {\n" +
+            "         \"document\":[\n" +
+            "            {\n" +
+            "               \"index\":{\n" +
+            "                  \"indexName\":\"tweeter\",\n" +
+            "                  \"indexType\":\"tweet\",\n" +
+            "                  \"indexId\":\"1\"\n" +
+            "               }\n" +
+            "            },\n" +
+            "            {\n" +
+            "               \"data\":{\n" +
+            "                  \"name\":\"a\",\n" +
+            "                  \"msg\":\"b\"\n" +
+            "               }\n" +
+            "            }\n" +
+            "         ]\n" +
+            "      },\n" +
+            "      {\n" +
+            "         \"document\":[\n" +
+            "            {\n" +
+            "               \"index\":{\n" +
+            "                  \"indexName\":\"tweeter\",\n" +
+            "                  \"indexType\":\"tweet\",\n" +
+            "                  \"indexId\":\"2\"\n" +
+            "               }\n" +
+            "            },\n" +
+            "            {\n" +
+            "               \"data\":{\n" +
+            "                  \"name\":\"c\",\n" +
+            "                  \"msg\":\"d\"\n" +
+            "               }\n" +
+            "            }\n" +
+            "         ]\n" +
+            "      }\n" +
+            "   ]\n" +
+            "}";
+
+    private final JestClient client = ElasticsearchConfiguration.remoteElasticsearch(getServer()).build().getClient();
+
+    @After
+    public void tearDown() throws IOException {
+        for (String snapshot : snapshots()) {
+            client.execute(new DeleteSnapshot.Builder(REPOSITORY, snapshot).build());
+        }
+        client.execute(new DeleteSnapshotRepository.Builder(REPOSITORY).build());
+        client.execute(new DeleteIndex.Builder("tweeter").build());
+        client.shutdownClient();
+    }
+
+    @Test
+    public void first_insertion_should_create_snapshot_and_later_insertions_should_restore_it() throws IOException {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .snapshotRepository(REPOSITORY, getSnapshotRepository())
+                .slowRequestThreshold(1L, TimeUnit.HOURS)
+                .build(client);
+        final ElasticsearchOperation operation = new ElasticsearchOperation(configuration);
+        final TracingJestClient tracingClient = (TracingJestClient) configuration.getClient();
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        final Map<String, LatencyHistogram> latenciesAfterIndexing = tracingClient.getLatencies();
+        assertThat(latenciesAfterIndexing.get("Bulk").getCount(), is(1L));
+        assertThat(latenciesAfterIndexing.get("CreateSnapshot").getCount(), is(1L));
+        assertThat(latenciesAfterIndexing.get("RestoreSnapshot"), nullValue());
+        final List<String> snapshots = snapshots();
+        assertThat(snapshots.size(), is(1));
+        assertThat(snapshots.get(0), startsWith("nosqlunit-"));
+
+        // Modify the indexed data, so that the restored contents can be told apart from the modified ones
+        final JestResult updateResult = client.execute(new Index.Builder(Collections.singletonMap("name", "x"))
+                .index("tweeter")
+                .type("tweet")
+                .id("1")
+                .build());
+        assertThat(updateResult.getErrorMessage(), updateResult.isSucceeded(), is(true));
+        final JestResult indexResult = client.execute(new Index.Builder(Collections.singletonMap("name", "y"))
+                .index("tweeter")
+                .type("tweet")
+                .id("3")
+                .refresh(true)
+                .build());
+        assertThat(indexResult.getErrorMessage(), indexResult.isSucceeded(), is(true));
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        final Map<String, LatencyHistogram> latenciesAfterRestore = tracingClient.getLatencies();
+        assertThat(latenciesAfterRestore.get("Bulk").getCount(), is(1L));
+        assertThat(latenciesAfterRestore.get("CreateSnapshot").getCount(), is(1L));
+        assertThat(latenciesAfterRestore.get("RestoreSnapshot").getCount(), is(1L));
+
+        final DocumentResult first = client.execute(new Get.Builder("tweeter", "1").type("tweet").build());
+        assertThat(first.getErrorMessage(), first.isSucceeded(), is(true));
+        assertThat(first.getJsonObject().getAsJsonObject("_source").getAsJsonPrimitive("name").getAsString(), is("a"));
+        assertThat(first.getJsonObject().getAsJsonObject("_source").getAsJsonPrimitive("msg").getAsString(), is("b"));
+        final DocumentResult second = client.execute(new Get.Builder("tweeter", "2").type("tweet").build());
+        assertThat(second.getErrorMessage(), second.isSucceeded(), is(true));
+        assertThat(second.getJsonObject().getAsJsonObject("_source").getAsJsonPrimitive("name").getAsString(), is("c"));
+        final DocumentResult third = client.execute(new Get.Builder("tweeter", "3").type("tweet").build());
+        assertThat(third.isSucceeded(), is(false));
+
+        final CountResult countResult = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(countResult.getErrorMessage(), countResult.isSucceeded(), is(true));
+        assertThat(countResult.getCount().intValue(), is(2));
+    }
+
+    @Test
+    public void deleted_snapshot_should_be_created_again() throws IOException {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .snapshotRepository(REPOSITORY, getSnapshotRepository())
+                .slowRequestThreshold(1L, TimeUnit.HOURS)
+                .build(client);
+        final ElasticsearchOperation operation = new ElasticsearchOperation(configuration);
+        final TracingJestClient tracingClient = (TracingJestClient) configuration.getClient();
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        final List<String> snapshots = snapshots();
+        assertThat(snapshots.size(), is(1));
+        final JestResult deleteResult = client.execute(new DeleteSnapshot.Builder(REPOSITORY, snapshots.get(0)).build());
+        assertThat(deleteResult.getErrorMessage(), deleteResult.isSucceeded(), is(true));
+        final JestResult deleteIndexResult = client.execute(new DeleteIndex.Builder("tweeter").build());
+        assertThat(deleteIndexResult.getErrorMessage(), deleteIndexResult.isSucceeded(), is(true));
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        final Map<String, LatencyHistogram> latencies = tracingClient.getLatencies();
+        assertThat(latencies.get("Bulk").getCount(), is(2L));
+        assertThat(latencies.get("CreateSnapshot").getCount(), is(2L));
+        assertThat(latencies.get("RestoreSnapshot"), nullValue());
+        assertThat(snapshots(), is(snapshots));
+    }
+
+    private List<String> snapshots() throws IOException {
+        final JestResult result = client.execute(new GetSnapshot.Builder(REPOSITORY).addSnapshot("_all").build());
+        if (!result.isSucceeded()) {
+            return Collections.emptyList();
+        }
+
+        final JsonArray snapshots = result.getJsonObject().getAsJsonArray("snapshots");
+        final List<String> names = new ArrayList<>(snapshots.size());
+        for (JsonElement snapshot : snapshots) {
+            final JsonObject snapshotInfo = snapshot.getAsJsonObject();
+            assertThat(snapshotInfo.getAsJsonPrimitive("state").getAsString(), is("SUCCESS"));
+            names.add(snapshotInfo.getAsJsonPrimitive("snapshot").getAsString());
+        }
+        return names;
+    }
+}
@@ -2,6 +2,7 @@ package com.github.joschi.nosqlunit.elasticsearch.http.integration;
 
 import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
 import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchOperation;
+import com.github.joschi.nosqlunit.elasticsearch.http.IndexNamespace;
 import com.lordofthejars.nosqlunit.core.DatabaseOperation;
 import com.lordofthejars.nosqlunit.core.NoSqlAssertionError;
 import org.junit.After;
@@ -166,6 +167,110 @@ public class WhenExpectedDataShouldBeComparedIT extends BaseIT {
         }
     }
 
+    @Test
+    public void data_should_be_compared_in_multiple_multi_get_requests() {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration
+                .remoteElasticsearch(getServer())
+                .multiGetSize(1)
+                .build();
+        final DatabaseOperation operation = new ElasticsearchOperation(configuration);
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_TWO_DATA.getBytes()));
+
+        boolean result = operation.databaseIs(new ByteArrayInputStream(ELASTICSEARCH_TWO_DATA.getBytes()));
+
+        assertThat(result, is(true));
+    }
+
+    @Test
+    public void all_mismatches_should_be_reported() {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration
+                .remoteElasticsearch(getServer())
+                .multiGetSize(1)
+                .comparisonThreads(2)
+                .maxMismatches(10)
+                .build();
+        final DatabaseOperation operation = new ElasticsearchOperation(configuration);
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        try {
+            operation.databaseIs(new ByteArrayInputStream(ELASTICSEARCH_TWO_DATA.getBytes()));
+            fail();
+        } catch (NoSqlAssertionError e) {
+            assertThat(e.getMessage(), is("2 mismatches between expected and actual documents:\n" +
+                    "Expected number of documents are 2 but 1 has been found.\n" +
+                    "Document with index: tweeter - type: tweet - id: 2 has not returned any document."));
+        } finally {
+            operation.deleteAll();
+        }
+    }
+
+    @Test
+    public void unexpected_documents_should_be_reported_by_scroll_comparison() {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration
+                .remoteElasticsearch(getServer())
+                .scrollComparison(true)
+                .build();
+        final DatabaseOperation operation = new ElasticsearchOperation(configuration);
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_TWO_DATA.getBytes()));
+
+        try {
+            operation.databaseIs(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+            fail();
+        } catch (NoSqlAssertionError e) {
+            assertThat(e.getMessage(), is("Unexpected document with index: tweeter - type: tweet - id: 2 has been found: {\"name\":\"c\",\"msg\":\"d\"}."));
+        } finally {
+            operation.deleteAll();
+        }
+    }
+
+    @Test
+    public void empty_expected_data_should_only_be_compared_with_the_namespace_by_scroll_comparison() {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration
+                .remoteElasticsearch(getServer())
+                .scrollComparison(true)
+                .indexNamespace(IndexNamespace.prefix("empty-"))
+                .build();
+        final DatabaseOperation operation = new ElasticsearchOperation(configuration);
+
+        elasticsearchOperation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        assertThat(operation.databaseIs(new ByteArrayInputStream("{\"documents\":[]}".getBytes())), is(true));
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+        try {
+            operation.databaseIs(new ByteArrayInputStream("{\"documents\":[]}".getBytes()));
+            fail();
+        } catch (NoSqlAssertionError e) {
+            assertThat(e.getMessage(), is("Expected number of documents are 0 but 1 has been found."));
+        } finally {
+            operation.deleteAll();
+        }
+    }
+
+    @Test
+    public void duplicate_expected_documents_should_be_reported_by_scroll_comparison() {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration
+                .remoteElasticsearch(getServer())
+                .scrollComparison(true)
+                .build();
+        final DatabaseOperation operation = new ElasticsearchOperation(configuration);
+        final String duplicateData = ELASTICSEARCH_TWO_DATA.replace("\"indexId\":\"2\"", "\"indexId\":\"1\"");
+
+        operation.insert(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        try {
+            operation.databaseIs(new ByteArrayInputStream(duplicateData.getBytes()));
+            fail();
+        } catch (NoSqlAssertionError e) {
+            assertThat(e.getMessage(), is("Document with index: tweeter - type: tweet - id: 1 is expected more than once."));
+        } finally {
+            operation.deleteAll();
+        }
+    }
+
     @Test
     public void exception_should_be_thrown_if_index_not_found() {
 
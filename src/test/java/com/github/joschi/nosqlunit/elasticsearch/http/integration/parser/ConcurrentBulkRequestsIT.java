@@ -0,0 +1,110 @@
+package com.github.joschi.nosqlunit.elasticsearch.http.integration.parser;
+
+import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.searchbox.client.JestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Holds back all bulk requests until the expected number of requests is in flight, so that the test only succeeds
+ * if the connection pool of the created client allows enough concurrent connections.
+ */
+public class ConcurrentBulkRequestsIT {
+    private static final int CONCURRENT_BULK_REQUESTS = 4;
+    private static final String BULK_RESPONSE = "{\"took\":1,\"errors\":false,\"items\":[]}";
+
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final AtomicInteger maxRequestsInFlight = new AtomicInteger();
+    private final CountDownLatch allRequestsInFlight = new CountDownLatch(CONCURRENT_BULK_REQUESTS);
+    private ExecutorService executor;
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void more_than_two_bulk_requests_should_be_in_flight() throws Exception {
+        final StringBuilder data = new StringBuilder();
+        for (int i = 0; i < CONCURRENT_BULK_REQUESTS; i++) {
+            data.append("{\"index\":{\"_index\":\"tweeter\",\"_type\":\"tweet\",\"_id\":\"").append(i).append("\"}}\n")
+                    .append("{\"name\":\"a\",\"msg\":\"b\"}\n");
+        }
+
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration
+                .remoteElasticsearch("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort())
+                .bulkActions(1)
+                .maxConcurrentBulkRequests(CONCURRENT_BULK_REQUESTS)
+                .build();
+        final JestClient client = configuration.getClient();
+        try {
+            final DataReader dataReader = new DataReader(client, configuration);
+            dataReader.read(new ByteArrayInputStream(data.toString().getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            client.shutdownClient();
+        }
+
+        assertThat(maxRequestsInFlight.get(), is(CONCURRENT_BULK_REQUESTS));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            while (requestBody.read() != -1) {
+                // Consume the request body
+            }
+        }
+
+        final String response;
+        if (exchange.getRequestURI().getPath().endsWith("/_bulk")) {
+            maxRequestsInFlight.accumulateAndGet(requestsInFlight.incrementAndGet(), Math::max);
+            allRequestsInFlight.countDown();
+            try {
+                allRequestsInFlight.await(5L, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            requestsInFlight.decrementAndGet();
+            response = BULK_RESPONSE;
+        } else {
+            response = "{}";
+        }
+
+        final byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+}
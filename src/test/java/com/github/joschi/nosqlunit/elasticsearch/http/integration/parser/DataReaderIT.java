@@ -1,10 +1,17 @@
 package com.github.joschi.nosqlunit.elasticsearch.http.integration.parser;
 
 import com.github.joschi.nosqlunit.elasticsearch.http.ElasticsearchConfiguration;
+import com.github.joschi.nosqlunit.elasticsearch.http.RefreshPolicy;
 import com.github.joschi.nosqlunit.elasticsearch.http.integration.BaseIT;
+import com.github.joschi.nosqlunit.elasticsearch.http.parser.CompiledDataset;
 import com.github.joschi.nosqlunit.elasticsearch.http.parser.DataReader;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
+import io.searchbox.core.Count;
+import io.searchbox.core.CountResult;
 import io.searchbox.core.DocumentResult;
 import io.searchbox.core.Get;
 import io.searchbox.indices.DeleteIndex;
@@ -14,13 +21,19 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class DataReaderIT extends BaseIT {
     private static final String ELASTICSEARCH_DATA = "{\n" +
@@ -45,6 +58,52 @@ public class DataReaderIT extends BaseIT {
             "   ]\n" +
             "}";
 
+    private static final String ELASTICSEARCH_BULK_DATA =
+            "{\"index\":{\"_index\":\"tweeter\",\"_type\":\"tweet\",\"_id\":\"1\"}}\n" +
+            "{\"name\":\"a\",\"msg\":\"b\"}\n" +
+            "\n" +
+            "{\"create\":{\"_index\":\"tweeter\",\"_type\":\"tweet\",\"_id\":\"2\"}}\n" +
+            "{\"name\":\"c\",\"msg\":\"d\"}\n";
+
+    private static final String ELASTICSEARCH_TWO_DATA = "{\n" +
+            "   \"documents\":[\n" +
+            "      {\n" +
+            "         \"document\":[\n" +
+            "            {\n" +
+            "               \"index\":{\n" +
+            "                  \"indexName\":\"tweeter\",\n" +
+            "                  \"indexType\":\"tweet\",\n" +
+            "                  \"indexId\":\"1\"\n" +
+            "               }\n" +
+            "            },\n" +
+            "            {\n" +
+            "               \"data\":{\n" +
+            "                  \"name\":\"a\",\n" +
+            "                  \"msg\":\"b\"\n" +
+            "               }\n" +
+            "            }\n" +
+            "         ]\n" +
+            "      },\n" +
+            "      {\n" +
+            "         \"document\":[\n" +
+            "            {\n" +
+            "               \"index\":{\n" +
+            "                  \"indexName\":\"tweeter\",\n" +
+            "                  \"indexType\":\"tweet\",\n" +
+            "                  \"indexId\":\"2\"\n" +
+            "               }\n" +
+            "            },\n" +
+            "            {\n" +
+            "               \"data\":{\n" +
+            "                  \"name\":\"c\",\n" +
+            "                  \"msg\":\"d\"\n" +
+            "               }\n" +
+            "            }\n" +
+            "         ]\n" +
+            "      }\n" +
+            "   ]\n" +
+            "}";
+
     private JestClient client;
 
     @Before
@@ -80,6 +139,176 @@ public class DataReaderIT extends BaseIT {
         assertThat(document.get("msg"), is("b"));
     }
 
+    @Test
+    public void document_sources_should_be_indexed_verbatim() throws IOException {
+        final String source = "{\"name\":\"caf\\u00e9 \\\"quoted\\\" \\\\ path\",\"count\":9007199254740993," +
+                "\"ratio\":1.5E-7,\"active\":true,\"missing\":null," +
+                "\"tags\":[\"a\",{\"nested\":[1,[2,3],{}]}],\"empty\":[]}";
+        final String data = "{\"documents\":[{\"document\":[" +
+                "{\"index\":{\"indexName\":\"tweeter\",\"indexType\":\"tweet\",\"indexId\":\"1\"}}," +
+                "{\"data\":" + source + "}]}]}";
+        final DataReader dataReader = new DataReader(client, false, Collections.emptyMap(), Collections.emptyMap());
+        dataReader.read(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+
+        final DocumentResult response = client.execute(new Get.Builder("tweeter", "1").type("tweet").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+
+        final JsonObject document = response.getJsonObject().getAsJsonObject("_source");
+        assertThat(document, is(new JsonParser().parse(source).getAsJsonObject()));
+        assertThat(document.getAsJsonPrimitive("name").getAsString(), is("caf\u00e9 \"quoted\" \\ path"));
+        assertThat(document.getAsJsonPrimitive("count").getAsString(), is("9007199254740993"));
+        assertThat(document.get("missing").isJsonNull(), is(true));
+    }
+
+    @Test
+    public void data_should_be_indexed_in_multiple_bulk_requests() throws IOException {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .bulkActions(1)
+                .build(client);
+        final DataReader dataReader = new DataReader(client, configuration);
+        dataReader.read(new ByteArrayInputStream(ELASTICSEARCH_TWO_DATA.getBytes()));
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+    }
+
+    @Test
+    public void index_should_be_created_once_for_multiple_documents() throws IOException {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put("number_of_shards", 1);
+        final DataReader dataReader = new DataReader(client, true, settings, Collections.emptyMap());
+        dataReader.read(new ByteArrayInputStream(ELASTICSEARCH_TWO_DATA.getBytes()));
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+    }
+
+    @Test
+    public void bulk_size_should_be_measured_in_utf8_bytes() throws IOException {
+        // Every action has less than 400 chars but more than 400 bytes
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            value.append('\u00e9');
+        }
+        final String data = "{\"index\":{\"_index\":\"tweeter\",\"_type\":\"tweet\",\"_id\":\"1\"}}\n" +
+                "{\"name\":\"" + value + "\"}\n" +
+                "{\"index\":{\"_index\":\"tweeter\",\"_type\":\"tweet\",\"_id\":\"2\"}}\n" +
+                "{\"name\":\"" + value + "\"}\n";
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .bulkSize(400L)
+                .build(client);
+
+        final DataReader dataReader = new DataReader(client, configuration);
+        final CompiledDataset dataset = dataReader.compile(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+        assertThat(dataset.getBulkBodies().size(), is(2));
+
+        dataReader.read(dataset);
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+    }
+
+    @Test
+    public void compiled_data_should_be_indexed() throws IOException {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .bulkActions(1)
+                .build(client);
+        final CompiledDataset dataset = new DataReader(client, configuration)
+                .compile(new ByteArrayInputStream(ELASTICSEARCH_TWO_DATA.getBytes()));
+        assertThat(dataset.getBulkBodies().size(), is(2));
+        assertThat(dataset.getIndices(), is(Collections.singleton("tweeter")));
+
+        final DataReader dataReader = new DataReader(client, configuration);
+        dataReader.read(dataset);
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+        assertThat(dataReader.getIndices(), is(Collections.singleton("tweeter")));
+    }
+
+    @Test
+    public void data_in_bulk_format_should_be_indexed() throws IOException {
+        final DataReader dataReader = new DataReader(client, false, Collections.emptyMap(), Collections.emptyMap());
+        dataReader.read(new ByteArrayInputStream(ELASTICSEARCH_BULK_DATA.getBytes()));
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+        assertThat(dataReader.getIndices(), is(Collections.singleton("tweeter")));
+    }
+
+    @Test
+    public void data_in_bulk_format_with_leading_blank_lines_should_be_indexed() throws IOException {
+        final DataReader dataReader = new DataReader(client, false, Collections.emptyMap(), Collections.emptyMap());
+        dataReader.read(new ByteArrayInputStream(("\n  \r\n\t\n" + ELASTICSEARCH_BULK_DATA).getBytes()));
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+    }
+
+    @Test
+    public void data_should_be_visible_after_waiting_for_refresh() throws IOException {
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .refreshPolicy(RefreshPolicy.WAIT_FOR)
+                .build(client);
+        final DataReader dataReader = new DataReader(client, configuration);
+        dataReader.read(new ByteArrayInputStream(ELASTICSEARCH_BULK_DATA.getBytes()));
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+    }
+
+    @Test
+    public void failed_actions_in_bulk_format_should_be_reported_with_line_number() {
+        final String data = "{\"index\":{\"_index\":\"tweeter\",\"_type\":\"tweet\",\"_id\":\"1\"}}\n" +
+                "{\"name\":\"a\",\"msg\":\"b\"}\n" +
+                "{\"update\":{\"_index\":\"tweeter\",\"_type\":\"tweet\",\"_id\":\"3\"}}\n" +
+                "{\"doc\":{\"name\":\"c\"}}\n";
+        final DataReader dataReader = new DataReader(client, false, Collections.emptyMap(), Collections.emptyMap());
+        try {
+            dataReader.read(new ByteArrayInputStream(data.getBytes()));
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("line=3"));
+        }
+    }
+
+    @Test
+    public void gzip_compressed_data_should_be_indexed() throws IOException {
+        final ByteArrayOutputStream compressedData = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(compressedData)) {
+            outputStream.write(ELASTICSEARCH_TWO_DATA.getBytes());
+        }
+
+        final DataReader dataReader = new DataReader(client, false, Collections.emptyMap(), Collections.emptyMap());
+        dataReader.read(new ByteArrayInputStream(compressedData.toByteArray()));
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+    }
+
+    @Test
+    public void zstd_compressed_data_should_be_indexed() throws IOException {
+        final ByteArrayOutputStream compressedData = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new ZstdOutputStream(compressedData)) {
+            outputStream.write(ELASTICSEARCH_BULK_DATA.getBytes());
+        }
+
+        final DataReader dataReader = new DataReader(client, false, Collections.emptyMap(), Collections.emptyMap());
+        dataReader.read(new ByteArrayInputStream(compressedData.toByteArray()));
+
+        final CountResult response = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+        assertThat(response.getCount().intValue(), is(2));
+    }
+
     @Test
     public void indices_should_be_created_with_custom_settings() throws IOException {
         final Map<String, Object> settings = Collections.singletonMap("settings", Collections.singletonMap("codec", "best_compression"));
@@ -100,6 +329,67 @@ public class DataReaderIT extends BaseIT {
         assertThat(codec, is("best_compression"));
     }
 
+    @Test
+    public void indices_created_with_bulk_load_profile_should_have_configured_settings() throws IOException {
+        final Map<String, Object> settings = Collections.singletonMap("settings", Collections.singletonMap("refresh_interval", "5s"));
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .createIndices(true)
+                .indexSettings(settings)
+                .bulkLoadProfile(true)
+                .build(client);
+        final DataReader dataReader = new DataReader(client, configuration);
+        dataReader.read(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        final GetSettings getSettings = new GetSettings.Builder().addIndex("tweeter").build();
+        final JestResult response = client.execute(getSettings);
+
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+
+        final JsonObject indexSettings = response.getJsonObject()
+                .getAsJsonObject("tweeter")
+                .getAsJsonObject("settings")
+                .getAsJsonObject("index");
+        assertThat(indexSettings.getAsJsonPrimitive("refresh_interval").getAsString(), is("5s"));
+        assertThat(indexSettings.getAsJsonPrimitive("number_of_replicas").getAsString(), is("1"));
+
+        final CountResult countResult = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(countResult.getErrorMessage(), countResult.isSucceeded(), is(true));
+        assertThat(countResult.getCount().intValue(), is(1));
+    }
+
+    @Test
+    public void indices_created_with_bulk_load_profile_should_keep_template_settings() throws IOException {
+        final Map<String, Object> templateSettings = new HashMap<>();
+        templateSettings.put("number_of_replicas", 0);
+        templateSettings.put("refresh_interval", "30s");
+        final Map<String, Object> templateSource = new HashMap<>();
+        templateSource.put("template", "tweeter");
+        templateSource.put("settings", templateSettings);
+        final ElasticsearchConfiguration configuration = ElasticsearchConfiguration.remoteElasticsearch()
+                .createIndices(true)
+                .indexTemplates(Collections.singletonMap("data_reader_test", templateSource))
+                .bulkLoadProfile(true)
+                .build(client);
+        final DataReader dataReader = new DataReader(client, configuration);
+        dataReader.read(new ByteArrayInputStream(ELASTICSEARCH_DATA.getBytes()));
+
+        final GetSettings getSettings = new GetSettings.Builder().addIndex("tweeter").build();
+        final JestResult response = client.execute(getSettings);
+
+        assertThat(response.getErrorMessage(), response.isSucceeded(), is(true));
+
+        final JsonObject indexSettings = response.getJsonObject()
+                .getAsJsonObject("tweeter")
+                .getAsJsonObject("settings")
+                .getAsJsonObject("index");
+        assertThat(indexSettings.getAsJsonPrimitive("number_of_replicas").getAsString(), is("0"));
+        assertThat(indexSettings.getAsJsonPrimitive("refresh_interval").getAsString(), is("30s"));
+
+        final CountResult countResult = client.execute(new Count.Builder().addIndex("tweeter").build());
+        assertThat(countResult.getErrorMessage(), countResult.isSucceeded(), is(true));
+        assertThat(countResult.getCount().intValue(), is(1));
+    }
+
     @Test
     public void indices_should_be_created_from_template() throws IOException {
         final Map<String, Object> templateSource = new HashMap<>();